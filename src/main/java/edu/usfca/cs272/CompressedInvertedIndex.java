@@ -0,0 +1,601 @@
+package edu.usfca.cs272;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Base class for the read-only inverted indexes that keep their postings in
+ * compressed form. Words are sorted, and the postings of every word are stored
+ * one after another, with document IDs and positions delta encoded and then
+ * variable-byte compressed. Document IDs are assigned in sorted
+ * location order, so postings decode in the same order the JSON output and
+ * location sets require.
+ *
+ * The postings of a word are laid out as the number of documents followed by,
+ * for each document, the gap from the previous document ID, the number of
+ * positions, and the gaps between those positions.
+ *
+ * Postings are addressed by {@code long} offsets. Since a buffer only holds up
+ * to 2 GB, they are kept in chunks of at most {@link #CHUNK_SIZE} bytes that
+ * each start at a word, so the postings of a single word never cross chunks and
+ * are limited to the size of a chunk.
+ *
+ * Subclasses decide where the words and postings live. Since these indexes
+ * cannot change, they are safe to share between threads without any locking.
+ *
+ * The binary index file written by {@link #writeBinary(Path)} holds a header,
+ * the location table with the word count of each location, a fixed width table
+ * with the int dictionary offset and long postings offset of each word, the
+ * word dictionary, the long length of the postings, and finally the encoded
+ * postings. The fixed width table lets the dictionary be searched in place
+ * without reading it into memory first. The dictionary of distinct words is
+ * limited to 2 GB, while the postings are not.
+ */
+public abstract class CompressedInvertedIndex implements InvertedIndexInterface {
+
+	/**
+	 * Marks the start of a binary index file.
+	 */
+	public static final int MAGIC = 0x42534958;
+
+	/**
+	 * Version of the binary index file format.
+	 */
+	public static final int VERSION = 3;
+
+	/**
+	 * Buffer size used when reading and writing binary index files.
+	 */
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Largest number of bytes in a single chunk of postings.
+	 */
+	public static final int CHUNK_SIZE = 1 << 30;
+
+	/**
+	 * Number of bytes taken by each word in the fixed width table.
+	 */
+	protected static final int TABLE_ENTRY = Integer.BYTES + Long.BYTES;
+
+	/**
+	 * Locations, with document IDs assigned in sorted order.
+	 */
+	protected final LocationDictionary locations;
+
+	/**
+	 * Total number of words at each location, indexed by document ID.
+	 */
+	protected final int[] counts;
+
+	/**
+	 * Encoded postings of every word, split into chunks that each start at a word.
+	 */
+	protected final ByteBuffer[] chunks;
+
+	/**
+	 * Index of the first word of each chunk.
+	 */
+	protected final int[] chunkWords;
+
+	/**
+	 * Initializes the parts shared by every compressed index.
+	 *
+	 * @param locations the locations with document IDs in sorted order
+	 * @param counts the word count of each location
+	 * @param chunks the encoded postings of every word, in chunks
+	 * @param chunkWords the index of the first word of each chunk
+	 * @see #chunkWords(IntToLongFunction, int, long)
+	 */
+	protected CompressedInvertedIndex(LocationDictionary locations, int[] counts, ByteBuffer[] chunks,
+			int[] chunkWords) {
+		this.locations = locations;
+		this.counts = counts;
+		this.chunks = chunks;
+		this.chunkWords = chunkWords;
+	}
+
+	/**
+	 * Splits postings into chunks that each start at a word, putting as many words
+	 * as fit into each chunk.
+	 *
+	 * @param offsets the postings offset of each word, and of the end of the last
+	 *   word
+	 * @param words the number of words
+	 * @param chunkSize the largest number of bytes in a chunk
+	 * @return the index of the first word of each chunk
+	 * @throws IOException if the offsets decrease, or the postings of a word do
+	 *   not fit in a chunk
+	 */
+	static int[] chunkWords(IntToLongFunction offsets, int words, long chunkSize) throws IOException {
+		ArrayList<Integer> starts = new ArrayList<>();
+		starts.add(0);
+		long chunkStart = offsets.applyAsLong(0);
+
+		for (int index = 0; index < words; index++) {
+			long start = offsets.applyAsLong(index);
+			long end = offsets.applyAsLong(index + 1);
+
+			if (end < start) {
+				throw new IOException("Malformed postings offsets at word " + index);
+			}
+			if (end - start > chunkSize) {
+				throw new IOException("The postings of word " + index + " are larger than " + chunkSize + " bytes");
+			}
+			if (end - chunkStart > chunkSize) {
+				starts.add(index);
+				chunkStart = start;
+			}
+		}
+
+		return starts.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Returns the number of words in the index.
+	 *
+	 * @return the number of words
+	 */
+	protected abstract int numWords();
+
+	/**
+	 * Returns the word at the given index in sorted order.
+	 *
+	 * @param index the index of the word
+	 * @return the word
+	 */
+	protected abstract String getWord(int index);
+
+	/**
+	 * Returns the index of the word in sorted order.
+	 *
+	 * @param word the word to look for
+	 * @return the index of the word if found, otherwise {@code -(insertion point)
+	 *   - 1} like {@link java.util.Arrays#binarySearch(Object[], Object)}
+	 */
+	protected abstract int find(String word);
+
+	/**
+	 * Checks if the word at the given index starts with a prefix.
+	 *
+	 * @param index the index of the word
+	 * @param prefix the prefix to check
+	 * @return true if the word starts with the prefix
+	 */
+	protected boolean hasPrefix(int index, String prefix) {
+		return getWord(index).startsWith(prefix);
+	}
+
+	/**
+	 * Returns where the postings of the word start, counting from the start of the
+	 * postings of the first word.
+	 *
+	 * @param index the index of the word, or {@link #numWords()} for the end of
+	 *   the last word
+	 * @return the start offset of the postings
+	 */
+	protected abstract long postingsOffset(int index);
+
+	/**
+	 * Returns a buffer positioned at the start of the postings for a word.
+	 *
+	 * @param index the index of the word
+	 * @return a buffer over the postings of the word
+	 */
+	protected ByteBuffer postings(int index) {
+		int chunk = 0;
+		if (chunks.length > 1) {
+			chunk = Arrays.binarySearch(chunkWords, index);
+			chunk = chunk >= 0 ? chunk : -chunk - 2;
+		}
+
+		long chunkStart = postingsOffset(chunkWords[chunk]);
+		long start = postingsOffset(index);
+		return chunks[chunk].slice((int) (start - chunkStart), (int) (postingsOffset(index + 1) - start));
+	}
+
+	/**
+	 * Decodes the positions of the word at the document ID.
+	 *
+	 * @param index the index of the word
+	 * @param id the document ID to decode
+	 * @return the positions, or null if the word does not appear there
+	 */
+	private PositionList decode(int index, int id) {
+		ByteBuffer buffer = postings(index);
+		int docs = VariableByteCodec.read(buffer);
+		int current = 0;
+
+		for (int d = 0; d < docs; d++) {
+			current += VariableByteCodec.read(buffer);
+			int frequency = VariableByteCodec.read(buffer);
+
+			if (current == id) {
+				return decodePositions(buffer, frequency);
+			}
+			if (current > id) {
+				return null;
+			}
+			VariableByteCodec.skip(buffer, frequency);
+		}
+		return null;
+	}
+
+	/**
+	 * Decodes every location and its positions for the word.
+	 *
+	 * @param index the index of the word
+	 * @return the positions keyed by location, in sorted location order
+	 */
+	private Map<String, PositionList> decode(int index) {
+		ByteBuffer buffer = postings(index);
+		int docs = VariableByteCodec.read(buffer);
+		Map<String, PositionList> decoded = new LinkedHashMap<>();
+		int current = 0;
+
+		for (int d = 0; d < docs; d++) {
+			current += VariableByteCodec.read(buffer);
+			int frequency = VariableByteCodec.read(buffer);
+			decoded.put(locations.getLocation(current), decodePositions(buffer, frequency));
+		}
+		return decoded;
+	}
+
+	/**
+	 * Decodes a run of position gaps.
+	 *
+	 * @param buffer the buffer positioned at the first gap
+	 * @param frequency the number of positions
+	 * @return the decoded positions
+	 */
+	private static PositionList decodePositions(ByteBuffer buffer, int frequency) {
+		PositionList positions = new PositionList(frequency);
+		int position = 0;
+		for (int p = 0; p < frequency; p++) {
+			position += VariableByteCodec.read(buffer);
+			positions.add(position);
+		}
+		return positions;
+	}
+
+	@Override
+	public boolean hasCount(String location) {
+		int id = locations.getId(location);
+		return id >= 0 && counts[id] > 0;
+	}
+
+	@Override
+	public boolean hasWord(String word) {
+		return find(word) >= 0;
+	}
+
+	@Override
+	public boolean hasLocation(String word, String location) {
+		int index = find(word);
+		int id = locations.getId(location);
+		return index >= 0 && id >= 0 && decode(index, id) != null;
+	}
+
+	@Override
+	public boolean hasPosition(String word, String location, int position) {
+		return getPositions(word, location).contains(position);
+	}
+
+	@Override
+	public SortedMap<String, Integer> getWordCounts() {
+		TreeMap<String, Integer> named = new TreeMap<>();
+		for (int id = 0; id < counts.length; id++) {
+			if (counts[id] > 0) {
+				named.put(locations.getLocation(id), counts[id]);
+			}
+		}
+		return Collections.unmodifiableSortedMap(named);
+	}
+
+	@Override
+	public Set<String> getWords() {
+		List<String> view = new AbstractList<>() {
+			@Override
+			public String get(int index) {
+				return getWord(index);
+			}
+
+			@Override
+			public int size() {
+				return numWords();
+			}
+		};
+
+		return new AbstractSet<>() {
+			@Override
+			public Iterator<String> iterator() {
+				return view.iterator();
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof String word && hasWord(word);
+			}
+
+			@Override
+			public int size() {
+				return numWords();
+			}
+		};
+	}
+
+	@Override
+	public int numWordFrequency(String word) {
+		int index = find(word);
+		return index < 0 ? 0 : VariableByteCodec.read(postings(index));
+	}
+
+	@Override
+	public int numTotalWordsForLocation(String location) {
+		int id = locations.getId(location);
+		return id < 0 ? 0 : counts[id];
+	}
+
+	@Override
+	public int numWordFrequencyAtLocation(String word, String location) {
+		return getPositions(word, location).size();
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		int index = find(word);
+		if (index < 0) {
+			return Collections.emptySet();
+		}
+
+		ByteBuffer buffer = postings(index);
+		int docs = VariableByteCodec.read(buffer);
+		TreeSet<String> named = new TreeSet<>();
+		int current = 0;
+
+		for (int d = 0; d < docs; d++) {
+			current += VariableByteCodec.read(buffer);
+			VariableByteCodec.skip(buffer, VariableByteCodec.read(buffer));
+			named.add(locations.getLocation(current));
+		}
+		return Collections.unmodifiableSet(named);
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String location) {
+		int index = find(word);
+		int id = locations.getId(location);
+		PositionList positions = index >= 0 && id >= 0 ? decode(index, id) : null;
+		return positions == null ? Collections.emptySet() : Collections.unmodifiableSet(positions);
+	}
+
+	@Override
+	public List<InvertedIndex.SearchResult> exactSearch(Set<String> queryWords) {
+		return exactMatches(queryWords).results(locations, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<InvertedIndex.SearchResult> partialSearch(Set<String> queries) {
+		return partialMatches(queries).results(locations, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<InvertedIndex.SearchResult> search(Set<String> queryWords, boolean isExact, int k) {
+		return (isExact ? exactMatches(queryWords) : partialMatches(queryWords)).results(locations, k);
+	}
+
+	/**
+	 * Accumulates the matches of an exact search.
+	 *
+	 * @param queryWords the words to search for
+	 * @return the accumulated matches of the current thread
+	 */
+	private ScoreAccumulator exactMatches(Set<String> queryWords) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get(counts.length);
+
+		for (String word : queryWords) {
+			int index = find(word);
+			if (index >= 0) {
+				compileResults(index, accumulator);
+			}
+		}
+		return accumulator;
+	}
+
+	/**
+	 * Accumulates the matches of a partial search.
+	 *
+	 * @param queries the prefixes to search for
+	 * @return the accumulated matches of the current thread
+	 */
+	private ScoreAccumulator partialMatches(Set<String> queries) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get(counts.length);
+		int size = numWords();
+
+		for (String query : queries) {
+			int index = find(query);
+			if (index < 0) {
+				index = -(index + 1);
+			}
+
+			while (index < size && hasPrefix(index, query)) {
+				compileResults(index, accumulator);
+				index++;
+			}
+		}
+		return accumulator;
+	}
+
+	/**
+	 * Adds the frequency of the word at every location it appears in to the
+	 * accumulated matches, skipping over the encoded positions.
+	 *
+	 * @param index the index of the word
+	 * @param accumulator the accumulated matches of the query
+	 */
+	private void compileResults(int index, ScoreAccumulator accumulator) {
+		ByteBuffer buffer = postings(index);
+		int docs = VariableByteCodec.read(buffer);
+		int id = 0;
+
+		for (int d = 0; d < docs; d++) {
+			id += VariableByteCodec.read(buffer);
+			int frequency = VariableByteCodec.read(buffer);
+			VariableByteCodec.skip(buffer, frequency);
+			accumulator.add(id, frequency, counts[id]);
+		}
+	}
+
+	/**
+	 * Returns the total number of words across every location.
+	 *
+	 * @return the total number of words
+	 */
+	public int numTotalWords() {
+		int total = 0;
+		for (int count : counts) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Decodes every word of this index into a mutable index.
+	 *
+	 * @param target the index to add to
+	 */
+	void addTo(InvertedIndex target) {
+		for (var entry : new IndexView().entrySet()) {
+			String word = entry.getKey();
+			for (var posting : entry.getValue().entrySet()) {
+				target.addPositions(word, posting.getKey(), posting.getValue());
+			}
+		}
+	}
+
+	@Override
+	public void writeJson(Path path) throws IOException {
+		JsonFormatter.writeIndexJson(new IndexView(), path, 1);
+	}
+
+	@Override
+	public void writeBinary(Path path) throws IOException {
+		int size = numWords();
+		byte[][] encoded = new byte[size][];
+		long dictionaryLength = 0;
+
+		for (int index = 0; index < size; index++) {
+			encoded[index] = getWord(index).getBytes(UTF_8);
+			dictionaryLength += encoded[index].length;
+		}
+
+		if (dictionaryLength > Integer.MAX_VALUE) {
+			throw new IOException("Unable to save a word dictionary larger than 2 GB: " + dictionaryLength + " bytes");
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(counts.length);
+			out.writeInt(size);
+
+			for (int id = 0; id < counts.length; id++) {
+				byte[] location = locations.getLocation(id).getBytes(UTF_8);
+				out.writeInt(location.length);
+				out.write(location);
+				out.writeInt(counts[id]);
+			}
+
+			int wordOffset = 0;
+			for (int index = 0; index < size; index++) {
+				out.writeInt(wordOffset);
+				out.writeLong(postingsOffset(index));
+				wordOffset += encoded[index].length;
+			}
+
+			out.writeInt((int) dictionaryLength);
+			for (byte[] word : encoded) {
+				out.write(word);
+			}
+
+			out.writeLong(postingsOffset(size));
+			byte[] buffer = new byte[BUFFER_SIZE];
+			for (int chunk = 0; chunk < chunks.length; chunk++) {
+				long chunkEnd = chunk + 1 < chunks.length ? postingsOffset(chunkWords[chunk + 1]) : postingsOffset(size);
+				ByteBuffer all = chunks[chunk].slice(0, (int) (chunkEnd - postingsOffset(chunkWords[chunk])));
+				while (all.hasRemaining()) {
+					int length = Math.min(buffer.length, all.remaining());
+					all.get(buffer, 0, length);
+					out.write(buffer, 0, length);
+				}
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{" + "words=" + numWords() + ", locations=" + counts.length + ", bytes="
+				+ postingsOffset(numWords()) + '}';
+	}
+
+	/**
+	 * Read-only map view of the index that decodes the postings of each word as it
+	 * is iterated, so writing the index does not decompress it all at once.
+	 */
+	private class IndexView extends AbstractMap<String, Map<String, PositionList>> {
+		@Override
+		public Set<Entry<String, Map<String, PositionList>>> entrySet() {
+			return new AbstractSet<>() {
+				@Override
+				public Iterator<Entry<String, Map<String, PositionList>>> iterator() {
+					return new Iterator<>() {
+						/** Index of the next word to decode. */
+						private int next = 0;
+
+						@Override
+						public boolean hasNext() {
+							return next < numWords();
+						}
+
+						@Override
+						public Entry<String, Map<String, PositionList>> next() {
+							if (next >= numWords()) {
+								throw new NoSuchElementException();
+							}
+							int index = next++;
+							return new SimpleImmutableEntry<>(getWord(index), decode(index));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return numWords();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,408 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Thread-safe inverted index built on concurrent maps instead of a lock.
+ * Readers never block, and writers only contend with each other on the words
+ * and locations they both touch.
+ *
+ * Like {@link InvertedIndex}, postings are keyed by integer document ID and the
+ * positions are stored in a {@link PositionList}. A published position list is
+ * never modified; adding positions replaces it with a merged copy through
+ * {@link ConcurrentHashMap#compute}, so a reader always sees a complete, sorted
+ * list.
+ *
+ * Without a lock, readers can see a document that is only partly added, for
+ * example some of its words but not yet its final word count. Every single
+ * call still sees a consistent structure, and once adding is finished the
+ * results are the same as {@link ThreadSafeInvertedIndex}.
+ */
+public class ConcurrentInvertedIndex implements InvertedIndexInterface {
+
+	/**
+	 * Number of document IDs in each chunk of {@link #names} and
+	 * {@link #counts}.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	/**
+	 * Words mapped to their positions keyed by document ID.
+	 */
+	private final ConcurrentSkipListMap<String, ConcurrentHashMap<Integer, PositionList>> index;
+
+	/**
+	 * Document IDs keyed by location.
+	 */
+	private final ConcurrentHashMap<String, Integer> ids;
+
+	/**
+	 * Locations indexed by document ID, in fixed size chunks so growing never
+	 * copies a location another thread is reading.
+	 */
+	private volatile String[][] names;
+
+	/**
+	 * Total word count of each document ID, in fixed size chunks so growing never
+	 * loses a count another thread is adding.
+	 */
+	private volatile AtomicIntegerArray[] counts;
+
+	/**
+	 * Number of document IDs assigned so far.
+	 */
+	private volatile int size;
+
+	/**
+	 * Initializes the inverted index with empty data structures.
+	 */
+	public ConcurrentInvertedIndex() {
+		index = new ConcurrentSkipListMap<>();
+		ids = new ConcurrentHashMap<>();
+		names = new String[1][];
+		counts = new AtomicIntegerArray[1];
+		size = 0;
+	}
+
+	/**
+	 * Returns the document ID of a location, assigning the next available ID if
+	 * the location has not been seen before.
+	 *
+	 * @param location the location
+	 * @return the document ID of the location
+	 */
+	private int locationId(String location) {
+		Integer id = ids.get(location);
+		return id != null ? id : ids.computeIfAbsent(location, this::assign);
+	}
+
+	/**
+	 * Assigns the next document ID to a location, adding a chunk if needed. Only
+	 * called once per location, from {@link #locationId(String)}.
+	 *
+	 * @param location the new location
+	 * @return the assigned document ID
+	 */
+	private synchronized int assign(String location) {
+		int id = size;
+		int chunk = id / CHUNK_SIZE;
+
+		if (chunk == names.length) {
+			names = Arrays.copyOf(names, chunk * 2);
+			counts = Arrays.copyOf(counts, chunk * 2);
+		}
+
+		if (names[chunk] == null) {
+			names[chunk] = new String[CHUNK_SIZE];
+			counts[chunk] = new AtomicIntegerArray(CHUNK_SIZE);
+		}
+
+		names[chunk][id % CHUNK_SIZE] = location;
+		size = id + 1;
+		return id;
+	}
+
+	/**
+	 * Returns the location of a document ID.
+	 *
+	 * @param id the document ID
+	 * @return the location with that ID
+	 */
+	private String location(int id) {
+		return names[id / CHUNK_SIZE][id % CHUNK_SIZE];
+	}
+
+	/**
+	 * Returns the total word count of a document ID.
+	 *
+	 * @param id the document ID
+	 * @return the word count, or 0 if none has been added yet
+	 */
+	private int count(int id) {
+		return counts[id / CHUNK_SIZE].get(id % CHUNK_SIZE);
+	}
+
+	/**
+	 * Adds to the total word count of a document ID.
+	 *
+	 * @param id the document ID
+	 * @param added the number of words added
+	 */
+	private void addCount(int id, int added) {
+		if (added > 0) {
+			counts[id / CHUNK_SIZE].addAndGet(id % CHUNK_SIZE, added);
+		}
+	}
+
+	/**
+	 * Returns the positions of a word at a location.
+	 *
+	 * @param word the word
+	 * @param location the location
+	 * @return the positions, or null if the word is not found at the location
+	 */
+	private PositionList positions(String word, String location) {
+		var postings = index.get(word);
+		Integer id = ids.get(location);
+		return postings == null || id == null ? null : postings.get(id);
+	}
+
+	/**
+	 * Merges positions of a word into a document, replacing the published
+	 * position list with a merged copy. The given list is published as is when
+	 * the word is new to the document, so it must not be modified afterwards.
+	 *
+	 * @param word the word
+	 * @param id the document ID
+	 * @param positions the positions to add
+	 * @return the number of positions that were not already present
+	 */
+	private int addPositions(String word, int id, PositionList positions) {
+		int[] added = { 0 };
+
+		index.computeIfAbsent(word, k -> new ConcurrentHashMap<>()).compute(id, (k, old) -> {
+			if (old == null) {
+				added[0] = positions.size();
+				return positions;
+			}
+
+			PositionList merged = new PositionList(old.size() + positions.size());
+			merged.addAll(old);
+			added[0] = merged.addAll(positions);
+			return added[0] == 0 ? old : merged;
+		});
+
+		return added[0];
+	}
+
+	@Override
+	public void addData(String word, String location, Integer num) {
+		int id = locationId(location);
+		PositionList positions = new PositionList(1);
+		positions.add(num.intValue());
+		addCount(id, addPositions(word, id, positions));
+	}
+
+	@Override
+	public void addAll(String[] words, String location, int start) {
+		int id = locationId(location);
+		int added = 0;
+
+		for (var entry : InvertedIndex.group(words, start).entrySet()) {
+			added += addPositions(entry.getKey(), id, entry.getValue());
+		}
+
+		addCount(id, added);
+	}
+
+	@Override
+	public void addDistinctIndex(InvertedIndex localIndex) {
+		LocationDictionary localLocations = localIndex.locationDictionary();
+		int[] remap = new int[localLocations.size()];
+		int[] added = new int[remap.length];
+
+		for (int local = 0; local < remap.length; local++) {
+			remap[local] = locationId(localLocations.getLocation(local));
+		}
+
+		for (var wordEntry : localIndex.postings().entrySet()) {
+			String word = wordEntry.getKey();
+
+			for (var locationEntry : wordEntry.getValue().entrySet()) {
+				int local = locationEntry.getKey();
+				PositionList positions = new PositionList(locationEntry.getValue().size());
+				positions.addAll(locationEntry.getValue());
+				added[local] += addPositions(word, remap[local], positions);
+			}
+		}
+
+		for (int local = 0; local < remap.length; local++) {
+			addCount(remap[local], added[local]);
+		}
+	}
+
+	@Override
+	public boolean hasCount(String location) {
+		return numTotalWordsForLocation(location) > 0;
+	}
+
+	@Override
+	public boolean hasWord(String word) {
+		return index.containsKey(word);
+	}
+
+	@Override
+	public boolean hasLocation(String word, String location) {
+		return positions(word, location) != null;
+	}
+
+	@Override
+	public boolean hasPosition(String word, String location, int position) {
+		var positions = positions(word, location);
+		return positions != null && positions.contains(position);
+	}
+
+	@Override
+	public SortedMap<String, Integer> getWordCounts() {
+		TreeMap<String, Integer> named = new TreeMap<>();
+		int known = size;
+		for (int id = 0; id < known; id++) {
+			int count = count(id);
+			if (count > 0) {
+				named.put(location(id), count);
+			}
+		}
+		return Collections.unmodifiableSortedMap(named);
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return Collections.unmodifiableSet(index.keySet());
+	}
+
+	@Override
+	public int numWordFrequency(String word) {
+		var postings = index.get(word);
+		return postings == null ? 0 : postings.size();
+	}
+
+	@Override
+	public int numTotalWordsForLocation(String location) {
+		Integer id = ids.get(location);
+		return id == null ? 0 : count(id);
+	}
+
+	@Override
+	public int numWordFrequencyAtLocation(String word, String location) {
+		var positions = positions(word, location);
+		return positions == null ? 0 : positions.size();
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		var postings = index.get(word);
+		if (postings == null) {
+			return Collections.emptySet();
+		}
+
+		TreeSet<String> named = new TreeSet<>();
+		for (int id : postings.keySet()) {
+			named.add(location(id));
+		}
+		return Collections.unmodifiableSet(named);
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String location) {
+		var positions = positions(word, location);
+		return positions == null ? Collections.emptySet() : Collections.unmodifiableSet(positions);
+	}
+
+	@Override
+	public List<InvertedIndex.SearchResult> exactSearch(Set<String> queryWords) {
+		return search(queryWords, true, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<InvertedIndex.SearchResult> partialSearch(Set<String> queries) {
+		return search(queries, false, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<InvertedIndex.SearchResult> search(Set<String> queryWords, boolean isExact, int k) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get(size);
+
+		for (String query : queryWords) {
+			if (isExact) {
+				var postings = index.get(query);
+				if (postings != null) {
+					compileResults(postings, accumulator);
+				}
+			}
+			else {
+				for (var wordEntry : index.tailMap(query).entrySet()) {
+					if (!wordEntry.getKey().startsWith(query)) {
+						break;
+					}
+					compileResults(wordEntry.getValue(), accumulator);
+				}
+			}
+		}
+
+		return accumulator.results(this::location, k);
+	}
+
+	/**
+	 * Adds the frequency of a word at every document it appears in to the
+	 * accumulated matches. Documents without a word count yet are still being
+	 * added and are skipped.
+	 *
+	 * @param postings the positions of the word keyed by document ID
+	 * @param accumulator the accumulated matches of the query
+	 */
+	private void compileResults(Map<Integer, PositionList> postings, ScoreAccumulator accumulator) {
+		for (var entry : postings.entrySet()) {
+			int id = entry.getKey();
+			int total = count(id);
+			int frequency = entry.getValue().size();
+			if (total > 0 && frequency > 0) {
+				accumulator.add(id, frequency, total);
+			}
+		}
+	}
+
+	/**
+	 * Copies the current contents into an unsynchronized index.
+	 *
+	 * @return the copy
+	 */
+	private InvertedIndex copy() {
+		InvertedIndex copy = new InvertedIndex();
+
+		for (var wordEntry : index.entrySet()) {
+			for (var locationEntry : wordEntry.getValue().entrySet()) {
+				PositionList positions = new PositionList(locationEntry.getValue().size());
+				positions.addAll(locationEntry.getValue());
+				copy.addPositions(wordEntry.getKey(), location(locationEntry.getKey()), positions);
+			}
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Copies the current contents into an immutable, compact index.
+	 *
+	 * @return the frozen index
+	 */
+	public FrozenInvertedIndex freeze() {
+		return copy().freeze();
+	}
+
+	@Override
+	public void writeJson(Path path) throws IOException {
+		copy().writeJson(path);
+	}
+
+	@Override
+	public void writeBinary(Path path) throws IOException {
+		freeze().writeBinary(path);
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrentInvertedIndex{" + "counts=" + getWordCounts() + ", index=" + copy() + '}';
+	}
+}
@@ -1,15 +1,12 @@
 package edu.usfca.cs272;
 
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
-
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
-import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
-
 /**
  * A web crawler that crawls web pages starting from a seed URL up to a
  * specified crawl limit.It uses a thread-safe inverted index for storing and
@@ -17,10 +14,16 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
  */
 public class Crawler {
 
+	/**
+	 * Number of crawled pages combined locally before they are merged into the
+	 * shared index.
+	 */
+	public static final int PAGES_PER_MERGE = 8;
+
 	/**
 	 * Thread safe version of the inverted index data structure.
 	 */
-	private final ThreadSafeInvertedIndex index;
+	private final InvertedIndexInterface index;
 	/**
 	 * Represents the maximum number of times the webcrawler is going to crawl
 	 * through Urls
@@ -47,6 +50,15 @@ public class Crawler {
 	 * The lock used to protect concurrent access to the underlying set.
 	 */
 	private final MultiReaderLock lock;
+	/**
+	 * Local indexes of crawled pages that are not merged into the shared index
+	 * yet.
+	 */
+	private List<InvertedIndex> pending;
+	/**
+	 * The lock used to protect the pending pages.
+	 */
+	private final Object pendingLock;
 
 	/**
 	 * Constructor for Crawler class. Initalizes instance of thread safe index,
@@ -56,11 +68,13 @@ public class Crawler {
 	 * @param maxCrawlLimit max crawl limit to be processed through
 	 * @param workers Utilized for each url being processed
 	 */
-	public Crawler(ThreadSafeInvertedIndex index, int maxCrawlLimit, WorkQueue workers) {
+	public Crawler(InvertedIndexInterface index, int maxCrawlLimit, WorkQueue workers) {
 		this.index = index;
 		this.maxCrawlLimit = maxCrawlLimit;
 		this.workers = workers;
 		this.lock = new MultiReaderLock(); // TODO Might be too complex for this use case
+		this.pending = new ArrayList<>();
+		this.pendingLock = new Object();
 	}
 
 	/**
@@ -74,6 +88,15 @@ public class Crawler {
 		}
 
 		workers.finish();
+
+		List<InvertedIndex> batch;
+		synchronized (pendingLock) {
+			batch = pending;
+			pending = new ArrayList<>();
+		}
+		if (!batch.isEmpty()) {
+			merge(batch);
+		}
 	}
 
 	/**
@@ -164,21 +187,49 @@ public class Crawler {
 	}
 
 	/**
-	 * Processes the text extracted from a URL, adding the stemmed words to the
-	 * index along with their location and position.
+	 * Processes the text extracted from a URL into a local index of the page, which
+	 * is merged into the shared index together with other pages.
 	 *
 	 * @param text The text to process.
 	 * @param location The URL from which the text was extracted.
 	 */
 	private void processText(String text, String location) {
-		// TODO Add to local instead
-		int pos = 1;
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
 		String[] words = TextParser.parse(text);
-		for (String word : words) {
-			index.addData(stemmer.stem(word).toString(), location, pos); // TODO blocking add within a loop
-			pos++;
+		String[] stems = new String[words.length];
+		for (int i = 0; i < words.length; i++) {
+			stems[i] = StemCache.SHARED.stem(words[i]);
+		}
+
+		InvertedIndex page = new InvertedIndex();
+		page.addAll(stems, location, 1);
+
+		List<InvertedIndex> batch = null;
+		synchronized (pendingLock) {
+			pending.add(page);
+			if (pending.size() >= PAGES_PER_MERGE) {
+				batch = pending;
+				pending = new ArrayList<>();
+			}
+		}
+
+		if (batch != null) {
+			merge(batch);
+		}
+	}
+
+	/**
+	 * Combines a batch of page indexes without locking, and then merges them into
+	 * the shared index at once. Publishing a snapshot is left to the caller, or
+	 * to a {@link SnapshotPublisher}.
+	 *
+	 * @param batch the local indexes of the pages, not shared with other threads
+	 */
+	private void merge(List<InvertedIndex> batch) {
+		InvertedIndex combined = batch.get(0);
+		for (int i = 1; i < batch.size(); i++) {
+			combined.addDistinctIndex(batch.get(i));
 		}
+		index.addDistinctIndex(combined);
 	}
 
 	/**
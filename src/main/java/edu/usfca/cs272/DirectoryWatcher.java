@@ -0,0 +1,297 @@
+package edu.usfca.cs272;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Watches a directory tree for text files that are created, modified, or
+ * deleted, and keeps a live index up to date while it is being searched.
+ *
+ * Events are not applied one at a time. Once something changes, the watcher
+ * keeps collecting events until the tree has been quiet for
+ * {@link #QUIET_MILLIS}, or for at most {@link #MAX_DELAY_MILLIS}. The paths
+ * are then coalesced, so a file changed many times is only indexed once, and
+ * the whole batch is applied with a single
+ * {@link InvertedIndexInterface#replaceLocations(java.util.Collection, InvertedIndex)}.
+ * A bulk copy of many files therefore becomes a few batched updates.
+ *
+ * The watcher does not commit the index after a batch, since that would freeze
+ * the whole index for every batch. Snapshots are published separately, for
+ * example by a {@link SnapshotPublisher}.
+ */
+public class DirectoryWatcher implements Closeable {
+
+	/**
+	 * How long the tree has to be quiet before a batch is applied.
+	 */
+	public static final long QUIET_MILLIS = 500;
+
+	/**
+	 * The longest a batch is delayed while events keep arriving.
+	 */
+	public static final long MAX_DELAY_MILLIS = 5000;
+
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * The root of the watched tree.
+	 */
+	private final Path root;
+
+	/**
+	 * The index to keep up to date.
+	 */
+	private final InvertedIndexInterface index;
+
+	/**
+	 * The watch service every directory is registered with.
+	 */
+	private final WatchService watcher;
+
+	/**
+	 * The directory of every registered key. Only used by the watcher thread
+	 * after the constructor.
+	 */
+	private final Map<WatchKey, Path> directories;
+
+	/**
+	 * The locations in the index, sorted so the locations inside a directory are
+	 * next to each other. Kept up to date with every batch, so the index is only
+	 * listed once. Only used by the watcher thread after the constructor.
+	 */
+	private final TreeSet<String> locations;
+
+	/**
+	 * The thread that waits for events and updates the index.
+	 */
+	private final Thread thread;
+
+	/**
+	 * Registers every directory in the tree. The files already in the tree are
+	 * expected to be indexed, and are only indexed again once they change. The
+	 * watcher must be the only one changing the index from then on.
+	 *
+	 * @param root the root of the tree to watch
+	 * @param index the index to keep up to date, which must support removal
+	 * @throws IOException if unable to watch a directory
+	 */
+	public DirectoryWatcher(Path root, InvertedIndexInterface index) throws IOException {
+		this.root = root;
+		this.index = index;
+		this.watcher = root.getFileSystem().newWatchService();
+		this.directories = new HashMap<>();
+		this.locations = new TreeSet<>(index.getWordCounts().keySet());
+		this.thread = new Thread(this::watch, "directory-watcher");
+		this.thread.setDaemon(true);
+
+		register(root, new HashSet<>());
+	}
+
+	/**
+	 * Starts watching in the background.
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * Stops watching, and waits for a batch that is being applied to finish.
+	 *
+	 * @throws IOException if unable to close the watch service
+	 */
+	@Override
+	public void close() throws IOException {
+		watcher.close();
+		try {
+			thread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Registers a directory and its subdirectories, collecting the text files
+	 * found in them.
+	 *
+	 * @param directory the directory to register
+	 * @param files the text files found so far
+	 * @throws IOException if unable to watch a directory
+	 */
+	private void register(Path directory, Set<Path> files) throws IOException {
+		directories.put(directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), directory);
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path entry : stream) {
+				if (Files.isDirectory(entry)) {
+					register(entry, files);
+				}
+				else if (InvertedIndexProcessor.isTextFile(entry)) {
+					files.add(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits for events and applies them in batches until the watcher is closed.
+	 */
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watcher.take();
+				Set<Path> changed = new LinkedHashSet<>();
+				long deadline = System.currentTimeMillis() + MAX_DELAY_MILLIS;
+
+				while (key != null) {
+					collect(key, changed);
+
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						break;
+					}
+					key = watcher.poll(Math.min(QUIET_MILLIS, remaining), MILLISECONDS);
+				}
+
+				update(changed);
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException e) {
+			log.debug("Stopped watching {}", root);
+		}
+	}
+
+	/**
+	 * Collects the paths changed by the events of a key.
+	 *
+	 * @param key the signalled key
+	 * @param changed the changed paths collected so far
+	 */
+	private void collect(WatchKey key, Set<Path> changed) {
+		Path directory = directories.get(key);
+
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				// events were lost, so everything is compared again
+				changed.add(root);
+			}
+			else if (directory != null) {
+				changed.add(directory.resolve((Path) event.context()));
+			}
+		}
+
+		if (!key.reset()) {
+			directories.remove(key);
+		}
+	}
+
+	/**
+	 * Indexes the changed paths again and applies them to the index at once.
+	 * Text files that exist are indexed again, new directories are registered and
+	 * indexed, and every location that no longer exists is removed.
+	 *
+	 * @param changed the changed paths
+	 */
+	private void update(Set<Path> changed) {
+		Set<Path> files = new LinkedHashSet<>();
+		Set<Path> missing = new HashSet<>();
+
+		for (Path path : changed) {
+			if (Files.isDirectory(path)) {
+				if (!path.equals(root) && directories.containsValue(path)) {
+					// only the files in a directory that is already watched matter
+					continue;
+				}
+
+				try {
+					register(path, files);
+				}
+				catch (IOException e) {
+					log.catching(Level.WARN, e);
+				}
+				missing.add(path);
+			}
+			else if (Files.isRegularFile(path)) {
+				if (InvertedIndexProcessor.isTextFile(path)) {
+					files.add(path);
+				}
+			}
+			else {
+				missing.add(path);
+			}
+		}
+
+		Set<String> stale = new HashSet<>();
+		InvertedIndex batch = new InvertedIndex();
+
+		for (Path file : files) {
+			stale.add(file.toString());
+			try {
+				InvertedIndexProcessor.processText(file, batch);
+			}
+			catch (IOException e) {
+				// most likely deleted again before it could be read
+				log.catching(Level.DEBUG, e);
+			}
+		}
+
+		String separator = root.getFileSystem().getSeparator();
+		for (Path path : missing) {
+			String prefix = path.toString();
+			if (locations.contains(prefix) && !Files.exists(path)) {
+				stale.add(prefix);
+			}
+
+			// the locations inside a directory are a single range of the sorted set
+			String directory = prefix + separator;
+			for (String location : locations.tailSet(directory)) {
+				if (!location.startsWith(directory)) {
+					break;
+				}
+				if (!Files.exists(Path.of(location))) {
+					stale.add(location);
+				}
+			}
+		}
+
+		if (stale.isEmpty()) {
+			return;
+		}
+
+		// the batch may be taken over by the index, so its locations are listed first
+		Set<String> indexed = batch.getWordCounts().keySet();
+		index.replaceLocations(stale, batch);
+		locations.removeAll(stale);
+		locations.addAll(indexed);
+		log.info("Updated {} locations of {} changed paths", stale.size(), changed.size());
+	}
+
+	@Override
+	public String toString() {
+		return "DirectoryWatcher{" + "root=" + root + ", directories=" + directories.size() + '}';
+	}
+}
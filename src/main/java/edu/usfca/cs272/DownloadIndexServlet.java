@@ -1,11 +1,8 @@
 package edu.usfca.cs272;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -26,7 +23,7 @@ public class DownloadIndexServlet extends HttpServlet {
 	 * Instance of the InvertedIndex class used to obtain data for the downloaed
 	 * index file.
 	 */
-	private InvertedIndex index;
+	private InvertedIndexInterface index;
 
 	/**
 	 * Constructs a DownloadIndexServlet with the specified inverted index.
@@ -34,27 +31,14 @@ public class DownloadIndexServlet extends HttpServlet {
 	 * @param index The InvertedIndex object that will be used to generate the JSON
 	 *   representation.
 	 */
-	public DownloadIndexServlet(InvertedIndex index) {
+	public DownloadIndexServlet(InvertedIndexInterface index) {
 		this.index = index;
 	}
 
-	/**
-	 * Reads the content of the file at the given path and returns it as a string.
-	 * This method is used to read the contents of the generated index.json file.
-	 *
-	 * @param indexPath The path to the file that needs to be read.
-	 * @return A string representation of the file's contents.
-	 * @throws IOException If an I/O error occurs reading from the file or a
-	 *   malformed or unmappable byte sequence is read.
-	 */
-	private static String readIndexJson(Path indexPath) throws IOException {
-		return new String(Files.readAllBytes(indexPath), StandardCharsets.UTF_8);
-	}
-
 	/**
 	 * Handles the GET request by generating a JSON representation of the inverted
 	 * index and setting up the response for file download. The file is named
-	 * "index.json".
+	 * "index.json", and is written to a temporary file that is removed afterwards.
 	 *
 	 * @param request object that contains the request the client made of the
 	 *   servlet.
@@ -65,16 +49,18 @@ public class DownloadIndexServlet extends HttpServlet {
 	 */
 	@Override
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		// TODO Can make more efficient
 		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
 		response.setHeader("Content-Disposition", "attachment; filename=\"index.json\"");
 
-		Path indexPath = Paths.get("index.json");
-		index.writeJson(indexPath);
-		String jsonIndex = readIndexJson(indexPath);
-
-		try (PrintWriter out = response.getWriter()) {
-			out.write(jsonIndex);
+		// each download gets its own file, written from a snapshot so indexing is not held up
+		Path indexPath = Files.createTempFile("index", ".json");
+		try {
+			index.snapshot().writeJson(indexPath);
+			Files.copy(indexPath, response.getOutputStream());
+		}
+		finally {
+			Files.deleteIfExists(indexPath);
 		}
 	}
 }
@@ -4,6 +4,9 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 /**
  * Class responsible for running this project based on the provided command-line
  * arguments. Driver starts server.
@@ -13,6 +16,9 @@ import java.nio.file.Path;
  */
 public class Driver {
 
+	/** The log4j2 logger. */
+	private static final Logger log = LogManager.getLogger();
+
 	/***
 	 * Main method to process command-line arguments and manage the inverted index.
 	 * Read and process text files or directories provided using a series of
@@ -25,19 +31,34 @@ public class Driver {
 	public static void main(String[] args) {
 
 		ArgumentParser parser = new ArgumentParser(args);
-		InvertedIndex index;
-		ThreadSafeInvertedIndex safe = null;
+		InvertedIndexInterface index;
+		InvertedIndex single = null;
 		QueryProcessorInterface queryProcessor;
 		WorkQueue workers = null;
 
 		if (parser.hasFlag("-threads") || parser.hasFlag("-html") || parser.hasFlag("-server")) {
-			safe = new ThreadSafeInvertedIndex();
-			index = safe;
+			// writers go first so that live searches cannot starve indexing
+			boolean preferWriters = parser.hasFlag("-preferwriters");
+
+			if (parser.hasFlag("-segmented")) {
+				index = new SegmentedInvertedIndex();
+			}
+			else if (parser.hasFlag("-concurrent")) {
+				index = new ConcurrentInvertedIndex();
+			}
+			else if (parser.hasFlag("-striped")) {
+				index = new StripedInvertedIndex(parser.getInteger("-striped", StripedInvertedIndex.DEFAULT_STRIPES),
+						preferWriters);
+			}
+			else {
+				index = new ThreadSafeInvertedIndex(preferWriters);
+			}
 			workers = new WorkQueue(parser.getInteger("-threads", 5));
-			queryProcessor = new MultithreadedQueryProcessor(workers, !parser.hasFlag("-partial"), safe);
+			queryProcessor = new MultithreadedQueryProcessor(workers, !parser.hasFlag("-partial"), index);
 		}
 		else {
-			index = new InvertedIndex();
+			single = new InvertedIndex();
+			index = single;
 			queryProcessor = new QueryProcessor(!parser.hasFlag("-partial"), index);
 		}
 
@@ -45,11 +66,16 @@ public class Driver {
 			Path contentsPath = parser.getPath("-text");
 			if (contentsPath != null) {
 				try {
-					if (workers != null) {
-						MultiThreadProcessor.processPath(contentsPath, safe, workers);
+					if (parser.hasFlag("-incremental")) {
+						Path savedPath = parser.getPath("-incremental", Path.of("index.bin"));
+						IncrementalProcessor.processPath(contentsPath, savedPath, index, workers);
+					}
+					else if (workers != null) {
+						MultiThreadProcessor.processPath(contentsPath, index, workers,
+								MultiThreadProcessor.Merge.of(parser.getString("-merge"), MultiThreadProcessor.Merge.FILE));
 					}
 					else {
-						InvertedIndexProcessor.processPath(contentsPath, index);
+						InvertedIndexProcessor.processPath(contentsPath, single);
 					}
 				}
 				catch (IOException e) {
@@ -65,7 +91,7 @@ public class Driver {
 			String seed = parser.getString("-html");
 			if (seed != null && !seed.isBlank()) {
 				try {
-					Crawler crawler = new Crawler(safe, parser.getInteger("-crawl", 1), workers);
+					Crawler crawler = new Crawler(index, parser.getInteger("-crawl", 1), workers);
 					crawler.startCrawl(LinkFinder.convertUrl(new URL(seed), seed));
 				}
 				catch (Exception e) {
@@ -77,6 +103,9 @@ public class Driver {
 			}
 		}
 
+		// searches and output read the committed snapshot without locking
+		index.commit();
+
 		if (parser.hasFlag("-query")) {
 			Path queryPath = parser.getPath("-query");
 			if (queryPath != null) {
@@ -96,6 +125,12 @@ public class Driver {
 			workers.shutdown();
 		}
 
+		logLockMetrics(index);
+
+		if (index instanceof SegmentedInvertedIndex segmented && !parser.hasFlag("-server")) {
+			segmented.shutdown();
+		}
+
 		if (parser.hasFlag("-counts")) {
 			try {
 				Path countPath = parser.getPath("-counts", Path.of("counts.json"));
@@ -116,6 +151,16 @@ public class Driver {
 			}
 		}
 
+		if (parser.hasFlag("-save")) {
+			try {
+				Path savePath = parser.getPath("-save", Path.of("index.bin"));
+				index.writeBinary(savePath);
+			}
+			catch (IOException e) {
+				System.out.println("Error saving index to file: " + e.getMessage());
+			}
+		}
+
 		if (parser.hasFlag("-results")) {
 			Path resPath = parser.getPath("-results", Path.of("results.json"));
 			try {
@@ -127,8 +172,44 @@ public class Driver {
 		}
 		if (parser.hasFlag("-server")) {
 			try {
+				// the server only reads, so serve a compact copy and let the mutable index go
+				InvertedIndexInterface served;
+				if (parser.hasFlag("-load")) {
+					Path loadPath = parser.getPath("-load", Path.of("index.bin"));
+					served = parser.hasFlag("-mmap") ? MappedInvertedIndex.open(loadPath)
+							: FrozenInvertedIndex.readBinary(loadPath);
+				}
+				else if (parser.hasFlag("-watch")) {
+					// files keep changing, so the live index is served and kept up to date
+					Path watchPath = parser.getPath("-watch", parser.getPath("-text"));
+					if (watchPath != null && (index instanceof ThreadSafeInvertedIndex || index instanceof StripedInvertedIndex)) {
+						new DirectoryWatcher(watchPath, index).start();
+						new SnapshotPublisher(index).start();
+					}
+					else {
+						System.out.println("Watching requires a directory and the default or striped index.");
+					}
+					served = index;
+				}
+				else if (index instanceof InvertedIndex mutable) {
+					served = mutable.freeze();
+				}
+				else if (index instanceof ConcurrentInvertedIndex concurrent) {
+					served = concurrent.freeze();
+				}
+				else if (index instanceof StripedInvertedIndex striped) {
+					served = striped.freeze();
+				}
+				else {
+					// segments are already frozen in the background
+					served = index;
+				}
+				index = null;
+				single = null;
+				queryProcessor = null;
+
 				SearchHistory searchHistory = new SearchHistory();
-				SearchEngine engine = new SearchEngine(safe, searchHistory);
+				SearchEngine engine = new SearchEngine(served, searchHistory);
 				engine.runServer(parser.getInteger("-server", 8080));
 			}
 			catch (Exception e) {
@@ -136,4 +217,23 @@ public class Driver {
 			}
 		}
 	}
+
+	/**
+	 * Logs how the locks of the index have been used so far, to diagnose indexing
+	 * stalls under search load. Does nothing for indexes that do not use a
+	 * {@link MultiReaderLock}.
+	 *
+	 * @param index the index to report on
+	 */
+	private static void logLockMetrics(InvertedIndexInterface index) {
+		if (index instanceof ThreadSafeInvertedIndex safe) {
+			log.info("Index lock: {}", safe.lockMetrics());
+		}
+		else if (index instanceof StripedInvertedIndex striped) {
+			int stripe = 0;
+			for (MultiReaderLock.Metrics metrics : striped.lockMetrics()) {
+				log.info("Index lock of stripe {}: {}", stripe++, metrics);
+			}
+		}
+	}
 }
@@ -0,0 +1,261 @@
+package edu.usfca.cs272;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable, compact version of the inverted index created by
+ * {@link InvertedIndex#freeze()} once indexing is finished. Words are kept in a
+ * sorted array on the heap and the postings of every word are stored in a few
+ * large byte arrays, compressed as described in {@link CompressedInvertedIndex}.
+ *
+ * The index can be saved with {@link #writeBinary(Path)} and loaded back with
+ * {@link #readBinary(Path)}. Loading only copies the saved arrays back into
+ * memory, no text is parsed or stemmed again.
+ */
+public class FrozenInvertedIndex extends CompressedInvertedIndex {
+
+	/**
+	 * Sorted words in the index.
+	 */
+	private final String[] words;
+
+	/**
+	 * Start offset of the postings of each word, with one extra entry marking the
+	 * end of the last word.
+	 */
+	private final long[] offsets;
+
+	/**
+	 * Initializes a frozen index from already encoded structures.
+	 *
+	 * @param words the sorted words
+	 * @param offsets the start offset of the postings of each word plus the end
+	 *   offset
+	 * @param chunks the encoded postings, in chunks
+	 * @param chunkWords the index of the first word of each chunk
+	 * @param locations the locations with document IDs in sorted order
+	 * @param counts the word count of each location
+	 */
+	private FrozenInvertedIndex(String[] words, long[] offsets, ByteBuffer[] chunks, int[] chunkWords,
+			LocationDictionary locations, int[] counts) {
+		super(locations, counts, chunks, chunkWords);
+		this.words = words;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Builds a frozen index from the structures of a mutable index.
+	 *
+	 * @param index the words mapped to their positions keyed by document ID
+	 * @param source the dictionary used by the mutable index
+	 * @param sourceCounts the word counts indexed by document ID
+	 * @return the frozen index
+	 */
+	static FrozenInvertedIndex build(SortedMap<String, ? extends Map<Integer, PositionList>> index,
+			LocationDictionary source, int[] sourceCounts) {
+		return build(index, source, sourceCounts, CHUNK_SIZE);
+	}
+
+	/**
+	 * Builds a frozen index from the structures of a mutable index, starting a
+	 * new chunk of postings whenever the next word does not fit.
+	 *
+	 * @param index the words mapped to their positions keyed by document ID
+	 * @param source the dictionary used by the mutable index
+	 * @param sourceCounts the word counts indexed by document ID
+	 * @param chunkSize the largest number of bytes in a chunk
+	 * @return the frozen index
+	 * @throws IllegalStateException if the postings of a word do not fit in a
+	 *   chunk
+	 */
+	static FrozenInvertedIndex build(SortedMap<String, ? extends Map<Integer, PositionList>> index,
+			LocationDictionary source, int[] sourceCounts, int chunkSize) {
+		// a location given a new document ID is listed under its old ID too
+		String[] sorted = new TreeSet<>(source.getLocations()).toArray(String[]::new);
+
+		LocationDictionary locations = new LocationDictionary();
+		for (String location : sorted) {
+			locations.getOrAdd(location);
+		}
+
+		int[] remap = new int[source.size()];
+		int[] counts = new int[sorted.length];
+		for (int id = 0; id < remap.length; id++) {
+			remap[id] = locations.getId(source.getLocation(id));
+			counts[remap[id]] += sourceCounts[id];
+		}
+
+		String[] words = index.keySet().toArray(String[]::new);
+		long[] offsets = new long[words.length + 1];
+		List<ByteBuffer> chunks = new ArrayList<>();
+		List<Integer> chunkWords = new ArrayList<>(List.of(0));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long chunkStart = 0;
+		int word = 0;
+
+		for (var postingsMap : index.values()) {
+			int start = out.size();
+			offsets[word] = chunkStart + start;
+			encode(postingsMap, remap, out);
+
+			int length = out.size() - start;
+			if (length > chunkSize) {
+				throw new IllegalStateException(
+						"The postings of \"" + words[word] + "\" are larger than " + chunkSize + " bytes.");
+			}
+
+			if (out.size() > chunkSize) {
+				// the word starts the next chunk instead
+				byte[] encoded = out.toByteArray();
+				chunks.add(ByteBuffer.wrap(Arrays.copyOf(encoded, start)));
+				chunkWords.add(word);
+				chunkStart += start;
+
+				out.reset();
+				out.write(encoded, start, length);
+			}
+			word++;
+		}
+
+		chunks.add(ByteBuffer.wrap(out.toByteArray()));
+		offsets[word] = chunkStart + out.size();
+
+		return new FrozenInvertedIndex(words, offsets, chunks.toArray(ByteBuffer[]::new),
+				chunkWords.stream().mapToInt(Integer::intValue).toArray(), locations, counts);
+	}
+
+	/**
+	 * Encodes the postings of a single word, renumbering the document IDs.
+	 *
+	 * @param postingsMap the positions keyed by old document ID
+	 * @param remap the new document ID for every old document ID
+	 * @param out the stream to write to
+	 */
+	private static void encode(Map<Integer, PositionList> postingsMap, int[] remap, ByteArrayOutputStream out) {
+		PositionList[] lists = new PositionList[postingsMap.size()];
+		long[] order = new long[lists.length];
+		int i = 0;
+
+		for (var entry : postingsMap.entrySet()) {
+			order[i] = (long) remap[entry.getKey()] << 32 | i;
+			lists[i++] = entry.getValue();
+		}
+
+		Arrays.sort(order);
+		VariableByteCodec.write(order.length, out);
+
+		int previousId = 0;
+		for (long packed : order) {
+			int id = (int) (packed >>> 32);
+			PositionList positions = lists[(int) packed];
+			VariableByteCodec.write(id - previousId, out);
+			VariableByteCodec.write(positions.size(), out);
+			previousId = id;
+
+			int previousPosition = 0;
+			for (int p = 0; p < positions.size(); p++) {
+				int position = positions.get(p);
+				VariableByteCodec.write(position - previousPosition, out);
+				previousPosition = position;
+			}
+		}
+	}
+
+	@Override
+	protected int numWords() {
+		return words.length;
+	}
+
+	@Override
+	protected String getWord(int index) {
+		return words[index];
+	}
+
+	@Override
+	protected int find(String word) {
+		return Arrays.binarySearch(words, word);
+	}
+
+	@Override
+	protected long postingsOffset(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * Loads an index previously saved with {@link #writeBinary(Path)} into memory.
+	 *
+	 * @param path the file to read from
+	 * @return the loaded index
+	 * @throws IOException if unable to read the file or the file is not a binary
+	 *   index file
+	 */
+	public static FrozenInvertedIndex readBinary(Path path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a binary index file: " + path);
+			}
+
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported binary index version " + version + ": " + path);
+			}
+
+			int size = in.readInt();
+			int wordCount = in.readInt();
+
+			LocationDictionary locations = new LocationDictionary();
+			int[] counts = new int[size];
+			for (int id = 0; id < size; id++) {
+				byte[] location = new byte[in.readInt()];
+				in.readFully(location);
+				locations.getOrAdd(new String(location, UTF_8));
+				counts[id] = in.readInt();
+			}
+
+			int[] wordOffsets = new int[wordCount + 1];
+			long[] offsets = new long[wordCount + 1];
+			for (int index = 0; index < wordCount; index++) {
+				wordOffsets[index] = in.readInt();
+				offsets[index] = in.readLong();
+			}
+
+			byte[] dictionary = new byte[in.readInt()];
+			in.readFully(dictionary);
+			wordOffsets[wordCount] = dictionary.length;
+
+			String[] words = new String[wordCount];
+			for (int index = 0; index < wordCount; index++) {
+				words[index] = new String(dictionary, wordOffsets[index], wordOffsets[index + 1] - wordOffsets[index],
+						UTF_8);
+			}
+
+			offsets[wordCount] = in.readLong();
+			int[] chunkWords = chunkWords(index -> offsets[index], wordCount, CHUNK_SIZE);
+			ByteBuffer[] chunks = new ByteBuffer[chunkWords.length];
+
+			for (int chunk = 0; chunk < chunks.length; chunk++) {
+				long end = chunk + 1 < chunks.length ? offsets[chunkWords[chunk + 1]] : offsets[wordCount];
+				byte[] postings = new byte[(int) (end - offsets[chunkWords[chunk]])];
+				in.readFully(postings);
+				chunks[chunk] = ByteBuffer.wrap(postings);
+			}
+
+			return new FrozenInvertedIndex(words, offsets, chunks, chunkWords, locations, counts);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Indexes text files incrementally on top of an index saved by a previous run.
+ * The saved index is kept next to an {@link IndexManifest}, and only the files
+ * that were added or changed since are read and stemmed again. Files that were
+ * changed or removed are dropped from the saved index before it is used, and
+ * the index is not saved again if no file changed.
+ */
+public class IncrementalProcessor {
+
+	/**
+	 * Returns the manifest file that belongs to a saved index.
+	 *
+	 * @param saved the saved binary index
+	 * @return the path of its manifest
+	 */
+	public static Path manifestPath(Path saved) {
+		return saved.resolveSibling(saved.getFileName() + ".manifest");
+	}
+
+	/**
+	 * Adds the saved index and every added or changed file under a path to the
+	 * index, and then saves the index and manifest again. Starts from scratch if
+	 * there is no saved index or manifest, or they cannot be read.
+	 *
+	 * @param path the file or directory to index
+	 * @param saved the saved binary index, also used for the updated index
+	 * @param index the index to add to
+	 * @param workers threads to do job, or null to process in this thread
+	 * @throws IOException if unable to read a file or save the index, in which
+	 *   case neither the index nor the manifest is saved
+	 */
+	public static void processPath(Path path, Path saved, InvertedIndexInterface index, WorkQueue workers)
+			throws IOException {
+		Path manifestPath = manifestPath(saved);
+		IndexManifest manifest = new IndexManifest();
+		InvertedIndex previous = new InvertedIndex();
+		boolean loaded = false;
+
+		if (Files.exists(saved) && Files.exists(manifestPath)) {
+			try {
+				manifest = IndexManifest.read(manifestPath);
+				FrozenInvertedIndex.readBinary(saved).addTo(previous);
+				loaded = true;
+			}
+			catch (IOException e) {
+				System.out.println("Unable to load saved index, indexing everything again: " + e.getMessage());
+				manifest = new IndexManifest();
+				previous = new InvertedIndex();
+			}
+		}
+
+		IndexManifest.Changes changes = manifest.update(path);
+		previous.removeLocations(changes.getStale());
+		index.addDistinctIndex(previous);
+
+		if (workers != null) {
+			MultiThreadProcessor.processFiles(changes.getFiles(), index, workers);
+		}
+		else {
+			for (Path file : changes.getFiles()) {
+				InvertedIndex localIndex = new InvertedIndex();
+				InvertedIndexProcessor.processText(file, localIndex);
+				index.addDistinctIndex(localIndex);
+			}
+		}
+
+		// a file that failed to index has thrown by now, so the old manifest is kept
+		// and the file is found changed again next time. The manifest is only written
+		// once the index it describes is saved, and is still written when nothing
+		// changed in case files were only touched
+		if (!changes.isEmpty() || !loaded) {
+			index.writeBinary(saved);
+		}
+		manifest.write(manifestPath);
+	}
+}
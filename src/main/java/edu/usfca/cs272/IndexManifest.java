@@ -0,0 +1,310 @@
+package edu.usfca.cs272;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Remembers the size, modification time, and content hash of every text file
+ * in a saved index, so the next run can tell which files were added, changed,
+ * or removed without reading the unchanged ones. Files are only hashed when
+ * their size or modification time differs, and a file that was only touched
+ * is not indexed again.
+ *
+ * Files are identified by the same location string the processors use, so the
+ * same path has to be given to {@code -text} on every run.
+ */
+public class IndexManifest {
+
+	/**
+	 * First line of every manifest file.
+	 */
+	private static final String HEADER = "# index manifest v1";
+
+	/**
+	 * Algorithm used to hash file contents.
+	 */
+	private static final String ALGORITHM = "SHA-256";
+
+	/**
+	 * The state of every indexed file, keyed by location.
+	 */
+	private final TreeMap<String, Entry> entries;
+
+	/**
+	 * Initializes an empty manifest.
+	 */
+	public IndexManifest() {
+		this.entries = new TreeMap<>();
+	}
+
+	/**
+	 * The state of a single file when it was indexed.
+	 */
+	private static class Entry {
+		/** The size of the file in bytes. */
+		private final long size;
+
+		/** The modification time of the file in milliseconds. */
+		private final long modified;
+
+		/** The hash of the file contents. */
+		private final String hash;
+
+		/**
+		 * Initializes the entry.
+		 *
+		 * @param size the size of the file in bytes
+		 * @param modified the modification time of the file in milliseconds
+		 * @param hash the hash of the file contents
+		 */
+		private Entry(long size, long modified, String hash) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * The files found to be different from the manifest.
+	 */
+	public static class Changes {
+		/** Files that were added or changed and need to be indexed. */
+		private final List<Path> files;
+
+		/** Locations that were changed or removed, or are indexed again. */
+		private final Set<String> stale;
+
+		/**
+		 * Initializes empty changes.
+		 */
+		private Changes() {
+			this.files = new ArrayList<>();
+			this.stale = new HashSet<>();
+		}
+
+		/**
+		 * Returns the files that were added or changed and need to be indexed.
+		 *
+		 * @return the files to index
+		 */
+		public List<Path> getFiles() {
+			return Collections.unmodifiableList(files);
+		}
+
+		/**
+		 * Returns the locations whose saved data is out of date and must be removed
+		 * from the saved index, which includes every file that is indexed again.
+		 *
+		 * @return the stale locations
+		 */
+		public Set<String> getStale() {
+			return Collections.unmodifiableSet(stale);
+		}
+
+		/**
+		 * Checks if nothing changed.
+		 *
+		 * @return true if no file was added, changed, or removed
+		 */
+		public boolean isEmpty() {
+			return files.isEmpty() && stale.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return "Changes{" + "files=" + files.size() + ", stale=" + stale.size() + '}';
+		}
+	}
+
+	/**
+	 * Compares the text files under a path against this manifest, and updates the
+	 * manifest to match them. Uses the same rules as
+	 * {@link InvertedIndexProcessor#processPath(Path, InvertedIndex)} for which
+	 * files are indexed.
+	 *
+	 * @param path the file or directory that is indexed
+	 * @return the files that were added, changed, or removed
+	 * @throws IOException if unable to read a file or directory
+	 */
+	public Changes update(Path path) throws IOException {
+		Changes changes = new Changes();
+		Set<String> seen = new HashSet<>();
+
+		if (Files.isDirectory(path)) {
+			updateDirectory(path, changes, seen);
+		}
+		else {
+			updateFile(path, changes, seen);
+		}
+
+		var iterator = entries.keySet().iterator();
+		while (iterator.hasNext()) {
+			String location = iterator.next();
+			if (!seen.contains(location)) {
+				changes.stale.add(location);
+				iterator.remove();
+			}
+		}
+
+		return changes;
+	}
+
+	/**
+	 * Compares every text file in a directory and its subdirectories.
+	 *
+	 * @param directory the directory
+	 * @param changes the changes found so far
+	 * @param seen the locations found so far
+	 * @throws IOException if unable to read a file or directory
+	 */
+	private void updateDirectory(Path directory, Changes changes, Set<String> seen) throws IOException {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path entry : stream) {
+				if (Files.isDirectory(entry)) {
+					updateDirectory(entry, changes, seen);
+				}
+				else if (InvertedIndexProcessor.isTextFile(entry)) {
+					updateFile(entry, changes, seen);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compares a single file, only hashing it if its size or modification time
+	 * changed.
+	 *
+	 * @param file the file
+	 * @param changes the changes found so far
+	 * @param seen the locations found so far
+	 * @throws IOException if unable to read the file
+	 */
+	private void updateFile(Path file, Changes changes, Set<String> seen) throws IOException {
+		String location = file.toString();
+		long size = Files.size(file);
+		long modified = Files.getLastModifiedTime(file).toMillis();
+		Entry previous = entries.get(location);
+		seen.add(location);
+
+		if (previous != null && previous.size == size && previous.modified == modified) {
+			return;
+		}
+
+		String hash = hash(file);
+		entries.put(location, new Entry(size, modified, hash));
+
+		if (previous == null || !previous.hash.equals(hash)) {
+			changes.files.add(file);
+			changes.stale.add(location);
+		}
+	}
+
+	/**
+	 * Hashes the contents of a file.
+	 *
+	 * @param file the file
+	 * @return the hash as a hexadecimal string
+	 * @throws IOException if unable to read the file
+	 */
+	private static String hash(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(ALGORITHM + " is not available.", e);
+		}
+
+		try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+			in.transferTo(OutputStream.nullOutputStream());
+		}
+
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	/**
+	 * Returns the number of files in the manifest.
+	 *
+	 * @return the number of files
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Loads a manifest previously saved with {@link #write(Path)}.
+	 *
+	 * @param path the file to read from
+	 * @return the loaded manifest
+	 * @throws IOException if unable to read the file or the file is not a manifest
+	 */
+	public static IndexManifest read(Path path) throws IOException {
+		IndexManifest manifest = new IndexManifest();
+
+		try (BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
+			if (!HEADER.equals(reader.readLine())) {
+				throw new IOException("Not an index manifest: " + path);
+			}
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t", 4);
+				if (parts.length != 4) {
+					throw new IOException("Malformed index manifest: " + path);
+				}
+
+				try {
+					manifest.entries.put(parts[3],
+							new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]));
+				}
+				catch (NumberFormatException e) {
+					throw new IOException("Malformed index manifest: " + path, e);
+				}
+			}
+		}
+
+		return manifest;
+	}
+
+	/**
+	 * Saves this manifest, one file per line.
+	 *
+	 * @param path the file to write to
+	 * @throws IOException if unable to write the file
+	 */
+	public void write(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, UTF_8)) {
+			writer.write(HEADER);
+			writer.newLine();
+
+			for (var entry : entries.entrySet()) {
+				Entry value = entry.getValue();
+				writer.write(value.size + "\t" + value.modified + "\t" + value.hash + "\t" + entry.getKey());
+				writer.newLine();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "IndexManifest{" + "files=" + entries.size() + '}';
+	}
+}
@@ -2,7 +2,9 @@ package edu.usfca.cs272;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -11,28 +13,59 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.ToIntFunction;
 
 /**
  * Data structure class to contain all major data structures that utilizes
  * wrapper methods, to alter data recieved from file inputs.
  */
-public class InvertedIndex {
+public class InvertedIndex implements InvertedIndexInterface {
 
 	/**
-	 * The final counts map that builds the file path and counts.
+	 * Removed postings are purged once they make up more than one in this many of
+	 * the word positions in the index.
 	 */
-	private final TreeMap<String, Integer> counts;
+	private static final int PURGE_SHARE = 4;
+
+	/**
+	 * Assigns the document IDs used as keys by the counts and index structures.
+	 */
+	private final LocationDictionary locations;
+	/**
+	 * Total word count of each location, indexed by document ID so scoring can
+	 * read it without a map lookup. Grows along with the location dictionary.
+	 */
+	private int[] counts;
+	/**
+	 * Final structure to contain the index information, keyed by word and then by
+	 * document ID.
+	 */
+	private final TreeMap<String, TreeMap<Integer, PositionList>> index;
 	/**
-	 * Final structure to contain the index information.
+	 * Document IDs of removed locations whose postings are still in the index.
+	 * Reads skip them, and they are purged from the index all at once when enough
+	 * of them pile up, see {@link #PURGE_SHARE}.
 	 */
-	private final TreeMap<String, TreeMap<String, TreeSet<Integer>>> index;
+	private final BitSet deleted;
+	/**
+	 * Number of word positions of locations that are not removed.
+	 */
+	private long livePositions;
+	/**
+	 * Number of word positions of removed locations still in the index.
+	 */
+	private long deadPositions;
 
 	/**
 	 * Initializes the inverted index with empty data structures.
 	 */
 	public InvertedIndex() {
-		counts = new TreeMap<>();
+		locations = new LocationDictionary();
+		counts = new int[16];
 		index = new TreeMap<>();
+		deleted = new BitSet();
+		livePositions = 0;
+		deadPositions = 0;
 	}
 
 	/**
@@ -44,13 +77,209 @@ public class InvertedIndex {
 	 * @param location file name, to be added within nestMap
 	 * @param num position in file
 	 */
+	@Override
 	public void addData(String word, String location, Integer num) {
-		index.putIfAbsent(word, new TreeMap<>());
-		index.get(word).putIfAbsent(location, new TreeSet<>());
+		int id = addLocation(location);
+		var postings = index.computeIfAbsent(word, k -> new TreeMap<>());
+		var positions = postings.computeIfAbsent(id, k -> new PositionList());
+
+		if (positions.add(num.intValue())) {
+			addCount(id, 1);
+		}
+	}
+
+	/**
+	 * Adds every word of a document in one pass, grouping the positions of each
+	 * word before they are added to the index.
+	 *
+	 * @param words the stems of the document, in order
+	 * @param location file name the stems were found in
+	 * @param start position of the first stem
+	 */
+	@Override
+	public void addAll(String[] words, String location, int start) {
+		addGrouped(group(words, start), location);
+	}
+
+	/**
+	 * Groups the positions of every word of a document, without touching the
+	 * index, so locking subclasses can do it before locking.
+	 *
+	 * @param words the stems of the document, in order
+	 * @param start position of the first stem
+	 * @return the positions of each word
+	 */
+	static Map<String, PositionList> group(String[] words, int start) {
+		HashMap<String, PositionList> grouped = new HashMap<>();
+		for (int i = 0; i < words.length; i++) {
+			grouped.computeIfAbsent(words[i], k -> new PositionList()).add(start + i);
+		}
+		return grouped;
+	}
+
+	/**
+	 * Adds grouped positions of a document to the index, taking ownership of the
+	 * position lists.
+	 *
+	 * @param grouped the positions of each word
+	 * @param location file name the words were found in
+	 * @see #group(String[], int)
+	 */
+	void addGrouped(Map<String, PositionList> grouped, String location) {
+		if (grouped.isEmpty()) {
+			return;
+		}
+
+		int id = addLocation(location);
+		int added = 0;
+
+		for (var entry : grouped.entrySet()) {
+			var postings = index.computeIfAbsent(entry.getKey(), k -> new TreeMap<>());
+			var positions = postings.get(id);
+
+			if (positions == null) {
+				postings.put(id, entry.getValue());
+				added += entry.getValue().size();
+			}
+			else {
+				added += positions.addAll(entry.getValue());
+			}
+		}
+
+		addCount(id, added);
+	}
+
+	/**
+	 * Removes the given locations without touching the postings. Their document
+	 * IDs are only marked as removed, and reads skip them from then on. A location
+	 * added again gets a new document ID, and the postings of removed IDs are
+	 * purged in one pass once they make up a large enough share of the index.
+	 *
+	 * @param removed the locations to remove
+	 */
+	@Override
+	public void removeLocations(Collection<String> removed) {
+		remove(removed);
+	}
+
+	/**
+	 * Removes the given locations without going through any overridden methods,
+	 * so subclasses that lock can call it while locked.
+	 *
+	 * @param removed the locations to remove
+	 */
+	private void remove(Collection<String> removed) {
+		for (String location : removed) {
+			int id = locations.getId(location);
+			if (id >= 0 && id < counts.length && counts[id] > 0) {
+				deleted.set(id);
+				livePositions -= counts[id];
+				deadPositions += counts[id];
+				counts[id] = 0;
+			}
+		}
+
+		if (deadPositions * PURGE_SHARE > livePositions + deadPositions) {
+			purge();
+		}
+	}
+
+	/**
+	 * Removes the postings of every removed location with a single pass over the
+	 * index, so purging many locations at once costs about the same as purging
+	 * one.
+	 */
+	private void purge() {
+		if (deleted.isEmpty()) {
+			return;
+		}
+
+		int size = deleted.cardinality();
+		var iterator = index.values().iterator();
+
+		while (iterator.hasNext()) {
+			var postings = iterator.next();
+
+			if (size < postings.size()) {
+				for (int id = deleted.nextSetBit(0); id >= 0; id = deleted.nextSetBit(id + 1)) {
+					postings.remove(id);
+				}
+			}
+			else {
+				postings.keySet().removeIf(deleted::get);
+			}
 
-		if (index.get(word).get(location).add(num)) {
-			counts.put(location, counts.getOrDefault(location, 0) + 1);
+			if (postings.isEmpty()) {
+				iterator.remove();
+			}
 		}
+
+		deleted.clear();
+		deadPositions = 0;
+	}
+
+	/**
+	 * Returns the document ID of a location about to be added. If the location
+	 * was removed before, it gets a new document ID, so the new postings never
+	 * mix with the old ones that are still waiting to be purged.
+	 *
+	 * @param location the location to add
+	 * @return the document ID of the location
+	 */
+	private int addLocation(String location) {
+		int id = locations.getOrAdd(location);
+		return deleted.get(id) ? locations.reassign(location) : id;
+	}
+
+	/**
+	 * Returns the index without the postings of removed locations. This is the
+	 * index itself if nothing was removed, and otherwise a filtered copy that
+	 * shares the position lists.
+	 *
+	 * @return the words mapped to their positions keyed by document ID
+	 */
+	private TreeMap<String, TreeMap<Integer, PositionList>> live() {
+		if (deleted.isEmpty()) {
+			return index;
+		}
+
+		TreeMap<String, TreeMap<Integer, PositionList>> live = new TreeMap<>();
+		for (var entry : index.entrySet()) {
+			TreeMap<Integer, PositionList> postings = new TreeMap<>();
+			for (var posting : entry.getValue().entrySet()) {
+				if (!deleted.get(posting.getKey())) {
+					postings.put(posting.getKey(), posting.getValue());
+				}
+			}
+			if (!postings.isEmpty()) {
+				live.put(entry.getKey(), postings);
+			}
+		}
+		return live;
+	}
+
+	@Override
+	public void replaceLocations(Collection<String> removed, InvertedIndex localIndex) {
+		remove(removed);
+		merge(localIndex);
+	}
+
+	@Override
+	public void replaceLocation(String[] words, String location, int start) {
+		replaceGrouped(group(words, start), location);
+	}
+
+	/**
+	 * Replaces everything indexed for a location with grouped positions, taking
+	 * ownership of the position lists.
+	 *
+	 * @param grouped the positions of each word
+	 * @param location file name the words were found in
+	 * @see #group(String[], int)
+	 */
+	void replaceGrouped(Map<String, PositionList> grouped, String location) {
+		remove(List.of(location));
+		addGrouped(grouped, location);
 	}
 
 	/**
@@ -59,36 +288,122 @@ public class InvertedIndex {
 	 *
 	 * @param localIndex the local inverted index to add
 	 */
+	@Override
 	public void addDistinctIndex(InvertedIndex localIndex) {
+		merge(localIndex);
+	}
+
+	/**
+	 * Merges a local inverted index without going through any overridden methods,
+	 * so subclasses that lock can call it while locked.
+	 *
+	 * @param localIndex the local inverted index to add
+	 */
+	private void merge(InvertedIndex localIndex) {
+		localIndex.purge();
+
+		int[] remap = new int[localIndex.locations.size()];
+		boolean sameIds = true;
+
+		for (int localId = 0; localId < remap.length; localId++) {
+			remap[localId] = this.addLocation(localIndex.locations.getLocation(localId));
+			sameIds &= remap[localId] == localId;
+		}
+
 		for (var localOuter : localIndex.index.entrySet()) {
 			String localWord = localOuter.getKey();
 			var localInner = localOuter.getValue();
 			var thisInner = this.index.get(localWord);
 
-			if (thisInner == null) {
+			if (thisInner == null && sameIds) {
 				this.index.put(localWord, localInner);
+				continue;
 			}
-			else {
-				for (var localLocationEntry : localInner.entrySet()) {
-					String localLocation = localLocationEntry.getKey();
-					TreeSet<Integer> localPositions = localLocationEntry.getValue();
-					var thisPositions = thisInner.get(localLocation);
-
-					if (thisPositions == null) {
-						thisInner.put(localLocation, localPositions);
-					}
-					else {
-						thisPositions.addAll(localPositions);
-					}
+
+			if (thisInner == null) {
+				thisInner = new TreeMap<>();
+				this.index.put(localWord, thisInner);
+			}
+
+			for (var localLocationEntry : localInner.entrySet()) {
+				int id = remap[localLocationEntry.getKey()];
+				PositionList localPositions = localLocationEntry.getValue();
+				var thisPositions = thisInner.get(id);
+
+				if (thisPositions == null) {
+					thisInner.put(id, localPositions);
+				}
+				else {
+					thisPositions.addAll(localPositions);
 				}
 			}
 		}
 
-		for (var localCountEntry : localIndex.counts.entrySet()) {
-			String location = localCountEntry.getKey();
-			Integer count = localCountEntry.getValue();
-			this.counts.put(location, this.counts.getOrDefault(location, 0) + count);
+		for (int localId = 0; localId < remap.length; localId++) {
+			addCount(remap[localId], localIndex.counts[localId]);
+		}
+	}
+
+	/**
+	 * Adds to the total word count of a location, growing the count table when
+	 * the location is new.
+	 *
+	 * @param id the document ID of the location
+	 * @param added the number of words to add
+	 */
+	private void addCount(int id, int added) {
+		if (id >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+		}
+		counts[id] += added;
+		livePositions += added;
+	}
+
+	/**
+	 * Adds a complete set of positions for a word at a location, taking ownership
+	 * of the position list if the word has not been seen at that location before.
+	 *
+	 * @param word the word to add
+	 * @param location the location the word was found in
+	 * @param positions the positions of the word at the location
+	 */
+	void addPositions(String word, String location, PositionList positions) {
+		int id = addLocation(location);
+		var postings = index.computeIfAbsent(word, k -> new TreeMap<>());
+		var thisPositions = postings.get(id);
+		int added;
+
+		if (thisPositions == null) {
+			postings.put(id, positions);
+			added = positions.size();
+		}
+		else {
+			added = thisPositions.addAll(positions);
 		}
+
+		addCount(id, added);
+	}
+
+	/**
+	 * Returns the underlying words mapped to their positions keyed by document ID,
+	 * so other index implementations can merge a local index. The postings of
+	 * removed locations are purged first, so this must only be called on an index
+	 * that is not shared. Must not be modified.
+	 *
+	 * @return the underlying index structure
+	 */
+	SortedMap<String, TreeMap<Integer, PositionList>> postings() {
+		purge();
+		return index;
+	}
+
+	/**
+	 * Returns the dictionary that resolves the document IDs of {@link #postings()}.
+	 *
+	 * @return the underlying location dictionary
+	 */
+	LocationDictionary locationDictionary() {
+		return locations;
 	}
 
 	/**
@@ -97,8 +412,9 @@ public class InvertedIndex {
 	 * @param location the location (file) to check
 	 * @return true if the count exists, false otherwise
 	 */
+	@Override
 	public boolean hasCount(String location) {
-		return counts.containsKey(location);
+		return count(location) > 0;
 	}
 
 	/**
@@ -107,8 +423,9 @@ public class InvertedIndex {
 	 * @param word the word to check
 	 * @return true if the word exists, false otherwise
 	 */
+	@Override
 	public boolean hasWord(String word) {
-		return index.containsKey(word);
+		return frequency(word) > 0;
 	}
 
 	/**
@@ -118,8 +435,9 @@ public class InvertedIndex {
 	 * @param location the location (file) to check
 	 * @return true if the word exists at the given location, false otherwise
 	 */
+	@Override
 	public boolean hasLocation(String word, String location) {
-		return index.containsKey(word) && index.get(word).containsKey(location);
+		return positions(word, location) != null;
 	}
 
 	/**
@@ -131,8 +449,10 @@ public class InvertedIndex {
 	 * @return true if the word exists at the given location and position, false
 	 *   otherwise
 	 */
+	@Override
 	public boolean hasPosition(String word, String location, int position) {
-		return hasLocation(word, location) && index.get(word).get(location).contains(position);
+		PositionList positions = positions(word, location);
+		return positions != null && positions.contains(position);
 	}
 
 	/**
@@ -140,8 +460,24 @@ public class InvertedIndex {
 	 *
 	 * @return the CountsInfo in the Driver class
 	 */
+	@Override
 	public SortedMap<String, Integer> getWordCounts() {
-		return Collections.unmodifiableSortedMap(counts);
+		return Collections.unmodifiableSortedMap(namedCounts());
+	}
+
+	/**
+	 * Builds the word counts keyed by location name.
+	 *
+	 * @return the word count of every location
+	 */
+	private TreeMap<String, Integer> namedCounts() {
+		TreeMap<String, Integer> named = new TreeMap<>();
+		for (int id = 0; id < locations.size(); id++) {
+			if (id < counts.length && counts[id] > 0) {
+				named.put(locations.getLocation(id), counts[id]);
+			}
+		}
+		return named;
 	}
 
 	/**
@@ -149,8 +485,9 @@ public class InvertedIndex {
 	 *
 	 * @return a set of all words
 	 */
+	@Override
 	public Set<String> getWords() {
-		return Collections.unmodifiableSet(index.keySet());
+		return Collections.unmodifiableSet(live().keySet());
 
 	}
 
@@ -161,7 +498,20 @@ public class InvertedIndex {
 	 * @return the word count of specific file.
 	 */
 	public Integer numCountForFile(String location) {
-		return counts.getOrDefault(location, 0);
+		return count(location);
+	}
+
+	/**
+	 * Returns the total number of words across every location.
+	 *
+	 * @return the total number of words
+	 */
+	public int numTotalWords() {
+		int total = 0;
+		for (int count : counts) {
+			total += count;
+		}
+		return total;
 	}
 
 	/**
@@ -170,8 +520,34 @@ public class InvertedIndex {
 	 * @param word the word to check
 	 * @return number of times the word appears
 	 */
+	@Override
 	public int numWordFrequency(String word) {
-		return hasWord(word) ? index.get(word).size() : 0;
+		return frequency(word);
+	}
+
+	/**
+	 * Counts the locations of a word that were not removed, without going through
+	 * any overridden methods.
+	 *
+	 * @param word the word to look up
+	 * @return the number of locations the word is found in
+	 */
+	private int frequency(String word) {
+		var postings = index.get(word);
+		if (postings == null) {
+			return 0;
+		}
+		if (deleted.isEmpty()) {
+			return postings.size();
+		}
+
+		int live = 0;
+		for (int id : postings.keySet()) {
+			if (!deleted.get(id)) {
+				live++;
+			}
+		}
+		return live;
 	}
 
 	/**
@@ -180,8 +556,9 @@ public class InvertedIndex {
 	 * @param location file location used as key
 	 * @return count of total words
 	 */
+	@Override
 	public int numTotalWordsForLocation(String location) {
-		return counts.getOrDefault(location, 0);
+		return count(location);
 	}
 
 	/**
@@ -192,8 +569,10 @@ public class InvertedIndex {
 	 * @param location the location (file) to check
 	 * @return number of times the word appears at the given location
 	 */
+	@Override
 	public int numWordFrequencyAtLocation(String word, String location) {
-		return getPositions(word, location).size();
+		PositionList positions = positions(word, location);
+		return positions == null ? 0 : positions.size();
 	}
 
 	/**
@@ -202,9 +581,17 @@ public class InvertedIndex {
 	 * @param word the word to retrieve locations for
 	 * @return a set of locations, or an empty set if the word is not found
 	 */
+	@Override
 	public Set<String> getLocations(String word) {
-		if (hasWord(word)) {
-			return Collections.unmodifiableSet(index.get(word).keySet());
+		var postings = index.get(word);
+		if (postings != null) {
+			TreeSet<String> named = new TreeSet<>();
+			for (int id : postings.keySet()) {
+				if (!deleted.get(id)) {
+					named.add(locations.getLocation(id));
+				}
+			}
+			return Collections.unmodifiableSet(named);
 		}
 		return Collections.emptySet();
 	}
@@ -218,28 +605,36 @@ public class InvertedIndex {
 	 * @return a set of positions, or an empty set if the word is not found at the
 	 *   given location
 	 */
+	@Override
 	public Set<Integer> getPositions(String word, String location) {
-		if (hasLocation(word, location)) {
-			return Collections.unmodifiableSet(index.get(word).get(location));
-		}
-		return Collections.emptySet();
+		PositionList positions = positions(word, location);
+		return positions == null ? Collections.emptySet() : Collections.unmodifiableSet(positions);
 	}
 
 	/**
-	 * Performs a search based on the provided query and the search mode
+	 * Looks up the positions of a word at a location without going through any
+	 * overridden methods, so subclasses that lock can call it while locked.
 	 *
-	 * @param queryWords words in query line to be searched
-	 * @param isExact A flag to determine if the search should be exact or partial.
-	 * @return the search result
-	 * @throws IOException If there is an error during searching.
+	 * @param word the word to look up
+	 * @param location the location to look up
+	 * @return the positions, or null if the word is not found at the location
 	 */
-	public List<SearchResult> search(Set<String> queryWords, boolean isExact) throws IOException {
-		if (isExact) {
-			return exactSearch(queryWords);
-		}
-		else {
-			return partialSearch(queryWords);
-		}
+	private PositionList positions(String word, String location) {
+		var postings = index.get(word);
+		int id = locations.getId(location);
+		return postings == null || id < 0 || deleted.get(id) ? null : postings.get(id);
+	}
+
+	/**
+	 * Looks up the word count of a location without going through any overridden
+	 * methods.
+	 *
+	 * @param location the location to look up
+	 * @return the word count, or 0 if the location is not found
+	 */
+	private int count(String location) {
+		int id = locations.getId(location);
+		return id >= 0 && id < counts.length ? counts[id] : 0;
 	}
 
 	/**
@@ -249,30 +644,55 @@ public class InvertedIndex {
 	 * @param queryWords The set of words intended for the exact search.
 	 * @return A list of search results based on the exact matches.
 	 */
+	@Override
 	public List<SearchResult> exactSearch(Set<String> queryWords) {
-		Map<String, SearchResult> searchResults = new HashMap<>();
-		List<SearchResult> currentResults = new ArrayList<>();
+		return exactMatches(queryWords).results(locations, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Performs a partial search based on the provided set of query words. This
+	 * method will return matches for words that start with any of the query words,
+	 * using a prefix search.
+	 *
+	 * @param queries The set of words intended for the partial search.
+	 * @return A list of search results based on partial matches.
+	 */
+	@Override
+	public List<SearchResult> partialSearch(Set<String> queries) {
+		return partialMatches(queries).results(locations, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<SearchResult> search(Set<String> queryWords, boolean isExact, int k) {
+		return (isExact ? exactMatches(queryWords) : partialMatches(queryWords)).results(locations, k);
+	}
+
+	/**
+	 * Accumulates the matches of an exact search.
+	 *
+	 * @param queryWords The set of words intended for the exact search.
+	 * @return the accumulated matches of the current thread
+	 */
+	private ScoreAccumulator exactMatches(Set<String> queryWords) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get(locations.size());
 
 		for (String word : queryWords) {
 			var words = index.get(word);
 			if (words != null) {
-				compileResults(words, searchResults, currentResults);
+				compileResults(words, accumulator);
 			}
 		}
-		return currentResults;
+		return accumulator;
 	}
 
 	/**
-	 * Performs a partial search based on the provided set of query words. This
-	 * method will return matches for words that start with any of the query words,
-	 * using a prefix search.
+	 * Accumulates the matches of a partial search.
 	 *
 	 * @param queries The set of words intended for the partial search.
-	 * @return A list of search results based on partial matches.
+	 * @return the accumulated matches of the current thread
 	 */
-	public List<SearchResult> partialSearch(Set<String> queries) {
-		Map<String, SearchResult> searchResults = new HashMap<>();
-		List<SearchResult> currentResults = new ArrayList<>();
+	private ScoreAccumulator partialMatches(Set<String> queries) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get(locations.size());
 
 		for (String query : queries) {
 			var words = index.tailMap(query);
@@ -281,33 +701,56 @@ public class InvertedIndex {
 					String word = wordEntry.getKey();
 					if (!word.startsWith(query))
 						break;
-					compileResults(wordEntry.getValue(), searchResults, currentResults);
+					compileResults(wordEntry.getValue(), accumulator);
 				}
 			}
 		}
-		return currentResults;
+		return accumulator;
 	}
 
 	/**
-	 * @param locations locations where words were found.
-	 * @param resultLookup map used to look up and/or store SearchResult objects.
-	 * @param searchResults list to store and eventually return the search results.
+	 * Combines the results of searching several indexes that each hold part of
+	 * the data, such as segments or stripes. Counts of the same location are
+	 * summed and scored against the total word count of that location.
+	 *
+	 * @param parts the results of each part
+	 * @param totalWords the total word count of a location across every part
+	 * @param k the maximum number of results to return
+	 * @return up to {@code k} of the best combined results, sorted
 	 */
-	private void compileResults(TreeMap<String, TreeSet<Integer>> locations, Map<String, SearchResult> resultLookup,
-			List<SearchResult> searchResults) {
+	static List<SearchResult> mergeResults(Collection<? extends List<SearchResult>> parts,
+			ToIntFunction<String> totalWords, int k) {
+		LocationDictionary merged = new LocationDictionary();
+		ScoreAccumulator accumulator = ScoreAccumulator.get(0);
+
+		for (List<SearchResult> part : parts) {
+			for (SearchResult result : part) {
+				String location = result.getWhere();
+				int id = merged.getId(location);
+				if (id < 0) {
+					id = merged.getOrAdd(location);
+					accumulator.add(id, result.getCount(), totalWords.applyAsInt(location));
+				}
+				else {
+					accumulator.add(id, result.getCount(), 0);
+				}
+			}
+		}
 
-		for (var locEntry : locations.entrySet()) {
-			String loc = locEntry.getKey();
-			int frequency = locEntry.getValue().size();
-			SearchResult result = resultLookup.get(loc);
-			if (result == null) {
-				result = new SearchResult(loc);
-				resultLookup.put(loc, result);
-				searchResults.add(result);
+		return accumulator.results(merged, k);
+	}
+
+	/**
+	 * @param postings document IDs where words were found.
+	 * @param accumulator the accumulated matches of the query
+	 */
+	private void compileResults(TreeMap<Integer, PositionList> postings, ScoreAccumulator accumulator) {
+		for (var locEntry : postings.entrySet()) {
+			int id = locEntry.getKey();
+			if (!deleted.get(id)) {
+				accumulator.add(id, locEntry.getValue().size(), counts[id]);
 			}
-			result.updateCount(frequency);
 		}
-		Collections.sort(searchResults);
 	}
 
 	/**
@@ -316,10 +759,34 @@ public class InvertedIndex {
 	 * @param path File to be written to
 	 * @throws IOException If there's an issue writing to the file
 	 */
+	@Override
 	public void writeJson(Path path) throws IOException {
-		JsonFormatter.writeIndexJson(index, path, 1);
+		JsonFormatter.writeIndexJson(live(), locations, path, 1);
 	}
 	
+	/**
+	 * Converts this index into an immutable, compressed form that answers the same
+	 * queries. Document IDs are renumbered in location order and the positions and
+	 * document IDs of every word are delta and variable-byte encoded.
+	 *
+	 * @return a frozen copy of this index
+	 */
+	public FrozenInvertedIndex freeze() {
+		return FrozenInvertedIndex.build(live(), locations, counts);
+	}
+
+	/**
+	 * Writes this index to a binary index file that can be loaded back with
+	 * {@link FrozenInvertedIndex#readBinary(Path)} without parsing any text.
+	 *
+	 * @param path File to be written to
+	 * @throws IOException If there's an issue writing to the file
+	 */
+	@Override
+	public void writeBinary(Path path) throws IOException {
+		freeze().writeBinary(path);
+	}
+
 	/* TODO
 	public void writeJson(Writer writer) throws IOException {
 		JsonFormatter.writeIndexJson(index, writer, 1);
@@ -328,14 +795,14 @@ public class InvertedIndex {
 
 	@Override
 	public String toString() {
-		return "InvertedIndex{" + "counts=" + counts + ", index=" + index + '}';
+		return "InvertedIndex{" + "locations=" + locations + ", counts=" + namedCounts() + ", index=" + live() + '}';
 	}
 
 	/**
 	 * Search object class that has count, score, and where. These objects will be
 	 * used as the values within the map structure
 	 */
-	public class SearchResult implements Comparable<SearchResult> {
+	public static class SearchResult implements Comparable<SearchResult> {
 		/**
 		 * Count of given word from a given file
 		 */
@@ -345,7 +812,8 @@ public class InvertedIndex {
 		 */
 		private double score;
 		/**
-		 * Location of a query search
+		 * Location of a query search, resolved from its document ID while the index
+		 * is still locked
 		 */
 		private final String where;
 
@@ -391,10 +859,11 @@ public class InvertedIndex {
 		 * Updates the count of the SearchResult with an additional count.
 		 *
 		 * @param additionalCount The count to be added to the existing count.
+		 * @param totalWords The total number of words at this location.
 		 */
-		private void updateCount(int additionalCount) {
+		void updateCount(int additionalCount, int totalWords) {
 			this.count += additionalCount;
-			this.score = (double) this.count / counts.get(where);
+			this.score = (double) this.count / totalWords;
 		}
 
 		@Override
@@ -414,7 +883,7 @@ public class InvertedIndex {
 
 		@Override
 		public String toString() {
-			return String.format("Where: %s, Count: %d, Score: %.4f", where, count, score);
+			return String.format("Where: %s, Count: %d, Score: %.4f", getWhere(), count, score);
 		}
 	}
 
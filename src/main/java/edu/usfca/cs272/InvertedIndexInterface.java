@@ -0,0 +1,278 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * Interface for the inverted index classes, used by the processors, query
+ * processors, and servlets so they can work with any index implementation.
+ * Adding and removing data is optional; read-only indexes throw
+ * {@link UnsupportedOperationException} instead.
+ */
+public interface InvertedIndexInterface {
+	/**
+	 * Adds a single word position to the index.
+	 *
+	 * @param word stem to be added
+	 * @param location file name the stem was found in
+	 * @param num position in file
+	 * @throws UnsupportedOperationException if the index is read-only
+	 */
+	default void addData(String word, String location, Integer num) {
+		throw new UnsupportedOperationException("Index is read-only.");
+	}
+
+	/**
+	 * Adds every word of a document at once, which is faster than adding each word
+	 * separately with {@link #addData(String, String, Integer)}.
+	 *
+	 * @param words the stems of the document, in order
+	 * @param location file name the stems were found in
+	 * @param start position of the first stem
+	 * @throws UnsupportedOperationException if the index is read-only
+	 */
+	default void addAll(String[] words, String location, int start) {
+		for (int i = 0; i < words.length; i++) {
+			addData(words[i], location, start + i);
+		}
+	}
+
+	/**
+	 * Merges only the distinct data from a local inverted index into this index.
+	 *
+	 * @param localIndex the local inverted index to add
+	 * @throws UnsupportedOperationException if the index is read-only
+	 */
+	default void addDistinctIndex(InvertedIndex localIndex) {
+		throw new UnsupportedOperationException("Index is read-only.");
+	}
+
+	/**
+	 * Removes every word of the given locations from the index, along with their
+	 * word counts. Locations that are not in the index are ignored.
+	 *
+	 * @param locations the locations to remove
+	 * @throws UnsupportedOperationException if the index does not support removal
+	 */
+	default void removeLocations(Collection<String> locations) {
+		throw new UnsupportedOperationException("Index does not support removal.");
+	}
+
+	/**
+	 * Removes every word of a location from the index, along with its word count.
+	 *
+	 * @param location the location to remove
+	 * @throws UnsupportedOperationException if the index does not support removal
+	 * @see #removeLocations(Collection)
+	 */
+	default void removeLocation(String location) {
+		removeLocations(List.of(location));
+	}
+
+	/**
+	 * Replaces everything indexed for a location with the given words, such as
+	 * when a file has changed and is indexed again.
+	 *
+	 * @param words the stems of the document, in order
+	 * @param location file name the stems were found in
+	 * @param start position of the first stem
+	 * @throws UnsupportedOperationException if the index does not support removal
+	 */
+	default void replaceLocation(String[] words, String location, int start) {
+		removeLocation(location);
+		addAll(words, location, start);
+	}
+
+	/**
+	 * Removes the given locations and then merges a local index, such as when a
+	 * batch of files has changed and the changed files are indexed again.
+	 *
+	 * @param locations the locations to remove
+	 * @param localIndex the local inverted index to add
+	 * @throws UnsupportedOperationException if the index does not support removal
+	 */
+	default void replaceLocations(Collection<String> locations, InvertedIndex localIndex) {
+		removeLocations(locations);
+		addDistinctIndex(localIndex);
+	}
+
+	/**
+	 * Checks if the word count exists for the given location.
+	 *
+	 * @param location the location (file) to check
+	 * @return true if the count exists, false otherwise
+	 */
+	boolean hasCount(String location);
+
+	/**
+	 * Checks if the index contains the given word.
+	 *
+	 * @param word the word to check
+	 * @return true if the word exists, false otherwise
+	 */
+	boolean hasWord(String word);
+
+	/**
+	 * Checks if the word is associated with the given location.
+	 *
+	 * @param word the word to check
+	 * @param location the location (file) to check
+	 * @return true if the word exists at the given location, false otherwise
+	 */
+	boolean hasLocation(String word, String location);
+
+	/**
+	 * Checks if the word is associated with the given location and position.
+	 *
+	 * @param word the word to check
+	 * @param location the location (file) to check
+	 * @param position the position of the word in the file
+	 * @return true if the word exists at the given location and position, false
+	 *   otherwise
+	 */
+	boolean hasPosition(String word, String location, int position);
+
+	/**
+	 * Sorted map of word counts keyed by location.
+	 *
+	 * @return the word count of every location
+	 */
+	SortedMap<String, Integer> getWordCounts();
+
+	/**
+	 * Returns a set of all the words in the index.
+	 *
+	 * @return a set of all words
+	 */
+	Set<String> getWords();
+
+	/**
+	 * Returns the number of locations the word appears in.
+	 *
+	 * @param word the word to check
+	 * @return number of locations containing the word
+	 */
+	int numWordFrequency(String word);
+
+	/**
+	 * Total word count in specified location
+	 *
+	 * @param location file location used as key
+	 * @return count of total words
+	 */
+	int numTotalWordsForLocation(String location);
+
+	/**
+	 * Returns the number of times a word appears in a specific location.
+	 *
+	 * @param word the word to check
+	 * @param location the location (file) to check
+	 * @return number of times the word appears at the given location
+	 */
+	int numWordFrequencyAtLocation(String word, String location);
+
+	/**
+	 * Returns a set of all the locations where the given word is found.
+	 *
+	 * @param word the word to retrieve locations for
+	 * @return a sorted set of locations, or an empty set if the word is not found
+	 */
+	Set<String> getLocations(String word);
+
+	/**
+	 * Returns a set of all the positions where the given word is found in the given
+	 * location.
+	 *
+	 * @param word the word to retrieve positions for
+	 * @param location the location to retrieve positions for
+	 * @return a set of positions, or an empty set if the word is not found at the
+	 *   given location
+	 */
+	Set<Integer> getPositions(String word, String location);
+
+	/**
+	 * Performs a search based on the provided query and the search mode
+	 *
+	 * @param queryWords words in query line to be searched
+	 * @param isExact A flag to determine if the search should be exact or partial.
+	 * @return the search result
+	 */
+	default List<InvertedIndex.SearchResult> search(Set<String> queryWords, boolean isExact) {
+		return isExact ? exactSearch(queryWords) : partialSearch(queryWords);
+	}
+
+	/**
+	 * Performs a search and returns only the best {@code k} results. The default
+	 * sorts every result first, implementations should override it to avoid that.
+	 *
+	 * @param queryWords words in query line to be searched
+	 * @param isExact A flag to determine if the search should be exact or partial.
+	 * @param k the maximum number of results to return
+	 * @return up to {@code k} of the best search results, sorted
+	 */
+	default List<InvertedIndex.SearchResult> search(Set<String> queryWords, boolean isExact, int k) {
+		List<InvertedIndex.SearchResult> results = search(queryWords, isExact);
+		return k >= results.size() ? results : new ArrayList<>(results.subList(0, k));
+	}
+
+	/**
+	 * Performs an exact search for the given query words.
+	 *
+	 * @param queryWords The set of words intended for the exact search.
+	 * @return A sorted list of search results based on the exact matches.
+	 */
+	List<InvertedIndex.SearchResult> exactSearch(Set<String> queryWords);
+
+	/**
+	 * Performs a partial search, matching every word that starts with any of the
+	 * query words.
+	 *
+	 * @param queries The set of words intended for the partial search.
+	 * @return A sorted list of search results based on partial matches.
+	 */
+	List<InvertedIndex.SearchResult> partialSearch(Set<String> queries);
+
+	/**
+	 * Returns a consistent view of the index for a series of reads that should
+	 * not see changes made in between, such as building a whole page. Indexes that
+	 * take snapshots return the one last published by {@link #commit()}. Indexes
+	 * that never change, or cannot take snapshots, return themselves.
+	 *
+	 * @return a consistent view of the index
+	 */
+	default InvertedIndexInterface snapshot() {
+		return this;
+	}
+
+	/**
+	 * Publishes the changes made so far as the snapshot returned by
+	 * {@link #snapshot()}. Called once indexing is done, or periodically by a
+	 * {@link SnapshotPublisher} while the index keeps changing, rather than after
+	 * every batch of changes. Indexes that cannot take snapshots do nothing.
+	 */
+	default void commit() {
+	}
+
+	/**
+	 * Writes JSON formatted data from the index to a file.
+	 *
+	 * @param path File to be written to
+	 * @throws IOException If there's an issue writing to the file
+	 */
+	void writeJson(Path path) throws IOException;
+
+	/**
+	 * Writes the index to a binary index file that can be loaded back with
+	 * {@link FrozenInvertedIndex#readBinary(Path)} or
+	 * {@link MappedInvertedIndex#open(Path)}.
+	 *
+	 * @param path File to be written to
+	 * @throws IOException If there's an issue writing to the file
+	 */
+	void writeBinary(Path path) throws IOException;
+}
@@ -1,16 +1,13 @@
 package edu.usfca.cs272;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-
-import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
+import java.util.ArrayList;
 
 /**
  * The InvertedIndexProcessor class provides functionalities for reading,
@@ -86,18 +83,17 @@ public class InvertedIndexProcessor {
 	 * @throws IOException IOException In case file cannot be read
 	 */
 	public static void processText(Path input, InvertedIndex mapMethods) throws IOException {
-		int pos = 1;
-		String location = input.toString();
+		ArrayList<String> stems = new ArrayList<>();
 		try (BufferedReader reader = Files.newBufferedReader(input, UTF_8)) {
 			String line;
-			Stemmer stemmer = new SnowballStemmer(ENGLISH);
 			while ((line = reader.readLine()) != null) {
 				String[] words = TextParser.parse(line);
 				for (String word : words) {
-					mapMethods.addData(stemmer.stem(word).toString(), location, pos);
-					pos++;
+					stems.add(StemCache.SHARED.stem(word));
 				}
 			}
 		}
+		// add the whole file at once instead of word by word
+		mapMethods.addAll(stems.toArray(String[]::new), input.toString(), 1);
 	}
 }
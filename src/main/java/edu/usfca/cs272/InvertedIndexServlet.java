@@ -24,7 +24,7 @@ public class InvertedIndexServlet extends HttpServlet {
 	 * A thread-safe version of the inverted index data structure. Stores words and
 	 * their associated positions. Final structure to contain the index information.
 	 */
-	private InvertedIndex index;
+	private InvertedIndexInterface index;
 
 	/**
 	 * Template used to display the inverted index.
@@ -38,7 +38,7 @@ public class InvertedIndexServlet extends HttpServlet {
 	 * @param index A thread-safe version of the inverted index data structure.
 	 * @throws IOException throws exception if template is unreadable
 	 */
-	public InvertedIndexServlet(ThreadSafeInvertedIndex index) throws IOException {
+	public InvertedIndexServlet(InvertedIndexInterface index) throws IOException {
 		this.index = index;
 		indexTemplate = SearchEngine.readResourceFile("Index.html");
 	}
@@ -62,15 +62,16 @@ public class InvertedIndexServlet extends HttpServlet {
 	 */
 	private String buildHtmlIndex() {
 		StringBuilder builder = new StringBuilder();
+		InvertedIndexInterface snapshot = index.snapshot();
 
-		for (String word : new TreeSet<>(index.getWords())) {
+		for (String word : new TreeSet<>(snapshot.getWords())) {
 			builder.append("<li>")
 					.append("<div class = 'is-size-5'>")
 					.append(word)
 					.append(":</div>")
 					.append("<ul style='margin-left: 25px;'>");
-			for (String location : index.getLocations(word)) {
-				int frequency = index.numWordFrequencyAtLocation(word, location);
+			for (String location : snapshot.getLocations(word)) {
+				int frequency = snapshot.numWordFrequencyAtLocation(word, location);
 				builder.append("<li>")
 						.append("<a class='index-link' href=\"")
 						.append(location)
@@ -14,6 +14,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 
 /**
  * Outputs several simple data structures in "pretty" JSON format where newlines
@@ -478,6 +479,76 @@ public class JsonFormatter {
 		}
 	}
 
+	/**
+	 * Converts an index keyed by document ID into json pretty text, resolving each
+	 * ID back to its location so the output matches {@link #writeIndexJson(Map,
+	 * Writer, int)}.
+	 *
+	 * @param index index map filled with data, keyed by word and then document ID
+	 * @param locations dictionary used to resolve document IDs to locations
+	 * @param writer String appender to be parsed into json format
+	 * @param indent indent increment number
+	 * @throws IOException if file is unreadable
+	 */
+	public static void writeIndexJson(Map<String, ? extends Map<Integer, ? extends Collection<? extends Number>>> index,
+			LocationDictionary locations, Writer writer, int indent) throws IOException {
+
+		var iterator = index.entrySet().iterator();
+
+		writeIndent("{", writer, 0);
+
+		if (iterator.hasNext()) {
+			writer.write("\n");
+			writeEntry(iterator.next(), locations, writer, indent);
+		}
+
+		while (iterator.hasNext()) {
+			writeIndent(",\n", writer, indent - 1);
+			writeEntry(iterator.next(), locations, writer, indent);
+		}
+
+		writeIndent("\n}", writer, indent - 1);
+	}
+
+	/**
+	 * Helper method to write an entry of an index keyed by document ID, with the
+	 * locations resolved and sorted.
+	 *
+	 * @param entry the word and its postings keyed by document ID
+	 * @param locations dictionary used to resolve document IDs to locations
+	 * @param writer the writer to use for output
+	 * @param indent the number of spaces to use for indentation
+	 * @throws IOException if unable to write to writer
+	 */
+	private static void writeEntry(Entry<String, ? extends Map<Integer, ? extends Collection<? extends Number>>> entry,
+			LocationDictionary locations, Writer writer, int indent) throws IOException {
+		TreeMap<String, Collection<? extends Number>> named = new TreeMap<>();
+		for (var posting : entry.getValue().entrySet()) {
+			named.put(locations.getLocation(posting.getKey()), posting.getValue());
+		}
+
+		writeQuote(entry.getKey(), writer, indent);
+		writer.write(": ");
+		writeObjectArrays(named, writer, indent - 1);
+		writeIndent("}", writer, indent);
+	}
+
+	/**
+	 * Helper to write an index keyed by document ID to json
+	 *
+	 * @param index map filled with data, keyed by word and then document ID
+	 * @param locations dictionary used to resolve document IDs to locations
+	 * @param path path the file path to use
+	 * @param indent indent increment number
+	 * @throws IOException if file is unreable
+	 */
+	public static void writeIndexJson(Map<String, ? extends Map<Integer, ? extends Collection<? extends Number>>> index,
+			LocationDictionary locations, Path path, int indent) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			writeIndexJson(index, locations, writer, indent);
+		}
+	}
+
 	/**
 	 * Helper to write index to json
 	 *
@@ -0,0 +1,125 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Assigns dense integer document IDs to locations (file paths or URLs) the
+ * first time they are seen, so the inverted index can store each location
+ * string once and refer to it by ID everywhere else. IDs start at 0 and are
+ * never reused. A location given a new ID with {@link #reassign(String)} keeps
+ * its old ID in {@link #getLocations()}, but is only looked up by the new one.
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ */
+public class LocationDictionary {
+
+	/**
+	 * Locations indexed by their document ID.
+	 */
+	private final ArrayList<String> locations;
+
+	/**
+	 * Document IDs keyed by location.
+	 */
+	private final HashMap<String, Integer> ids;
+
+	/**
+	 * Initializes an empty location dictionary.
+	 */
+	public LocationDictionary() {
+		locations = new ArrayList<>();
+		ids = new HashMap<>();
+	}
+
+	/**
+	 * Returns the document ID for the location, assigning the next available ID if
+	 * the location has not been seen before.
+	 *
+	 * @param location the location to look up
+	 * @return the document ID of the location
+	 */
+	public int getOrAdd(String location) {
+		Integer id = ids.get(location);
+		if (id == null) {
+			id = locations.size();
+			locations.add(location);
+			ids.put(location, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Assigns the next available document ID to a location, even if it already
+	 * has one. The old ID still resolves to the location, but the location only
+	 * resolves to the new ID.
+	 *
+	 * @param location the location to assign a new ID to
+	 * @return the new document ID of the location
+	 */
+	public int reassign(String location) {
+		int id = locations.size();
+		locations.add(location);
+		ids.put(location, id);
+		return id;
+	}
+
+	/**
+	 * Returns the document ID for the location.
+	 *
+	 * @param location the location to look up
+	 * @return the document ID, or -1 if the location is unknown
+	 */
+	public int getId(String location) {
+		Integer id = ids.get(location);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Checks if the location has been assigned a document ID.
+	 *
+	 * @param location the location to check
+	 * @return true if the location is known
+	 */
+	public boolean hasLocation(String location) {
+		return ids.containsKey(location);
+	}
+
+	/**
+	 * Returns the location for the document ID.
+	 *
+	 * @param id the document ID
+	 * @return the location with that ID
+	 * @throws IndexOutOfBoundsException if the ID was never assigned
+	 */
+	public String getLocation(int id) {
+		return locations.get(id);
+	}
+
+	/**
+	 * Returns the number of locations in this dictionary, which is also the next
+	 * document ID that will be assigned.
+	 *
+	 * @return the number of locations
+	 */
+	public int size() {
+		return locations.size();
+	}
+
+	/**
+	 * Returns all locations in document ID order.
+	 *
+	 * @return an unmodifiable list of locations
+	 */
+	public List<String> getLocations() {
+		return Collections.unmodifiableList(locations);
+	}
+
+	@Override
+	public String toString() {
+		return locations.toString();
+	}
+}
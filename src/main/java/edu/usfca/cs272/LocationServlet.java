@@ -24,7 +24,7 @@ public class LocationServlet extends HttpServlet {
 	 * A thread-safe version of the inverted index data structure. Stores words and
 	 * their associated positions. Final structure to contain the index information.
 	 */
-	private InvertedIndex index;
+	private InvertedIndexInterface index;
 
 	/**
 	 * Template responsible for the location page of all links
@@ -37,7 +37,7 @@ public class LocationServlet extends HttpServlet {
 	 * @param index A thread-safe version of the inverted index data structure.
 	 * @throws IOException throws exception if template is unreadable
 	 */
-	public LocationServlet(ThreadSafeInvertedIndex index) throws IOException {
+	public LocationServlet(InvertedIndexInterface index) throws IOException {
 		this.index = index;
 		locationTemplate = SearchEngine.readResourceFile("Locations.html");
 	}
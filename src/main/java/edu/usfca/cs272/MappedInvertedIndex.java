@@ -0,0 +1,277 @@
+package edu.usfca.cs272;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Read-only inverted index that searches a binary index file in place, written
+ * by {@link CompressedInvertedIndex#writeBinary(Path)}. The word table, word
+ * dictionary, and postings are memory-mapped as separate segments, so they live
+ * outside the heap and the operating system page cache decides which parts stay
+ * in memory. Only the location table is read onto the heap, so heap use depends
+ * on the number of locations rather than the size of the index.
+ *
+ * The postings are mapped in chunks of at most {@link #CHUNK_SIZE} bytes, so
+ * they can be larger than a single mapping allows. The word table and
+ * dictionary are each mapped whole. Words are compared against the dictionary
+ * bytes in place, so looking up a word does not decode any other word.
+ */
+public class MappedInvertedIndex extends CompressedInvertedIndex {
+
+	/**
+	 * The int dictionary offset and long postings offset of each word.
+	 */
+	private final ByteBuffer table;
+
+	/**
+	 * The UTF-8 bytes of every word, one after another in sorted order.
+	 */
+	private final ByteBuffer dictionary;
+
+	/**
+	 * Number of words in the index.
+	 */
+	private final int size;
+
+	/**
+	 * Total length of the postings of every word.
+	 */
+	private final long postingsLength;
+
+	/**
+	 * Initializes the index from mapped segments of the file.
+	 *
+	 * @param locations the locations with document IDs in sorted order
+	 * @param counts the word count of each location
+	 * @param table the mapped word table
+	 * @param dictionary the mapped word dictionary
+	 * @param chunks the mapped postings, in chunks
+	 * @param chunkWords the index of the first word of each chunk
+	 * @param postingsLength the total length of the postings
+	 */
+	private MappedInvertedIndex(LocationDictionary locations, int[] counts, ByteBuffer table, ByteBuffer dictionary,
+			ByteBuffer[] chunks, int[] chunkWords, long postingsLength) {
+		super(locations, counts, chunks, chunkWords);
+		this.table = table;
+		this.dictionary = dictionary;
+		this.size = table.capacity() / TABLE_ENTRY;
+		this.postingsLength = postingsLength;
+	}
+
+	/**
+	 * Opens a binary index file for searching. The file must not change while the
+	 * returned index is in use.
+	 *
+	 * @param path the binary index file
+	 * @return the mapped index
+	 * @throws IOException if unable to read or map the file, or the file is not a
+	 *   binary index file
+	 */
+	public static MappedInvertedIndex open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// the header and location table are read in order, tracking where they end
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a binary index file: " + path);
+			}
+
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported binary index version " + version + ": " + path);
+			}
+
+			int locationCount = in.readInt();
+			int wordCount = in.readInt();
+			long position = 4 * Integer.BYTES;
+
+			LocationDictionary locations = new LocationDictionary();
+			int[] counts = new int[locationCount];
+			for (int id = 0; id < locationCount; id++) {
+				byte[] location = new byte[in.readInt()];
+				in.readFully(location);
+				locations.getOrAdd(new String(location, UTF_8));
+				counts[id] = in.readInt();
+				position += 2 * Integer.BYTES + location.length;
+			}
+
+			long tableLength = (long) TABLE_ENTRY * wordCount;
+			ByteBuffer table = map(channel, position, tableLength);
+			position += tableLength;
+
+			int dictionaryLength = read(channel, position, Integer.BYTES).getInt(0);
+			position += Integer.BYTES;
+			ByteBuffer dictionary = map(channel, position, dictionaryLength);
+			position += dictionaryLength;
+
+			long postingsLength = read(channel, position, Long.BYTES).getLong(0);
+			position += Long.BYTES;
+
+			IntToLongFunction offsets = index -> index < wordCount ? table.getLong(TABLE_ENTRY * index + Integer.BYTES)
+					: postingsLength;
+			int[] chunkWords = chunkWords(offsets, wordCount, CHUNK_SIZE);
+			ByteBuffer[] chunks = new ByteBuffer[chunkWords.length];
+
+			for (int chunk = 0; chunk < chunks.length; chunk++) {
+				long start = offsets.applyAsLong(chunkWords[chunk]);
+				long end = chunk + 1 < chunks.length ? offsets.applyAsLong(chunkWords[chunk + 1]) : postingsLength;
+				chunks[chunk] = map(channel, position + start, end - start);
+			}
+
+			return new MappedInvertedIndex(locations, counts, table, dictionary, chunks, chunkWords, postingsLength);
+		}
+	}
+
+	/**
+	 * Maps a read-only segment of the file.
+	 *
+	 * @param channel the open file
+	 * @param position where the segment starts
+	 * @param length the length of the segment
+	 * @return the mapped segment
+	 * @throws IOException if the segment is too large or past the end of the file
+	 */
+	private static ByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+		if (length > Integer.MAX_VALUE || position + length > channel.size()) {
+			throw new IOException("Invalid segment of length " + length + " at " + position);
+		}
+		return channel.map(MapMode.READ_ONLY, position, length);
+	}
+
+	/**
+	 * Reads a few bytes at the given position of the file.
+	 *
+	 * @param channel the open file
+	 * @param position where the bytes start
+	 * @param length the number of bytes to read
+	 * @return a buffer holding the bytes read
+	 * @throws IOException if unable to read the file
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file at " + position);
+			}
+		}
+		return buffer;
+	}
+
+	@Override
+	protected int numWords() {
+		return size;
+	}
+
+	@Override
+	protected String getWord(int index) {
+		int start = wordStart(index);
+		byte[] bytes = new byte[wordStart(index + 1) - start];
+		dictionary.get(start, bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * Returns where a word starts in the dictionary.
+	 *
+	 * @param index the index of the word, or {@link #numWords()} for the end of
+	 *   the last word
+	 * @return the start offset of the word
+	 */
+	private int wordStart(int index) {
+		return index < size ? table.getInt(TABLE_ENTRY * index) : dictionary.capacity();
+	}
+
+	/**
+	 * Compares the word at the given index with another word the same way as
+	 * {@link String#compareTo(String)}, decoding the UTF-8 bytes of the
+	 * dictionary one character at a time instead of creating a string.
+	 *
+	 * @param index the index of the word in the dictionary
+	 * @param word the word to compare with
+	 * @param prefix whether a dictionary word that starts with the other word
+	 *   counts as equal
+	 * @return a negative number, zero, or a positive number if the dictionary word
+	 *   is less than, equal to, or greater than the other word
+	 */
+	private int compare(int index, String word, boolean prefix) {
+		int position = wordStart(index);
+		int end = wordStart(index + 1);
+		int i = 0;
+
+		while (position < end) {
+			if (i == word.length()) {
+				return prefix ? 0 : 1;
+			}
+
+			int c = dictionary.get(position++);
+			if (c < 0) {
+				// multi-byte sequences have 1 to 3 continuation bytes
+				int continuation = (c & 0xE0) == 0xC0 ? 1 : (c & 0xF0) == 0xE0 ? 2 : 3;
+				c &= 0x3F >> continuation;
+				for (int b = 0; b < continuation; b++) {
+					c = c << 6 | dictionary.get(position++) & 0x3F;
+				}
+
+				if (c >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+					char high = Character.highSurrogate(c);
+					if (high != word.charAt(i)) {
+						return high - word.charAt(i);
+					}
+					if (++i == word.length()) {
+						return prefix ? 0 : 1;
+					}
+					c = Character.lowSurrogate(c);
+				}
+			}
+
+			if (c != word.charAt(i)) {
+				return c - word.charAt(i);
+			}
+			i++;
+		}
+
+		return i == word.length() ? 0 : -1;
+	}
+
+	@Override
+	protected boolean hasPrefix(int index, String prefix) {
+		return compare(index, prefix, true) == 0;
+	}
+
+	@Override
+	protected int find(String word) {
+		int low = 0;
+		int high = size - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = compare(middle, word, false);
+
+			if (comparison < 0) {
+				low = middle + 1;
+			}
+			else if (comparison > 0) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	@Override
+	protected long postingsOffset(int index) {
+		return index < size ? table.getLong(TABLE_ENTRY * index + Integer.BYTES) : postingsLength;
+	}
+}
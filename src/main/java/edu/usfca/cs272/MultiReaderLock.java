@@ -1,10 +1,14 @@
 package edu.usfca.cs272;
 
+import java.lang.invoke.VarHandle;
 import java.util.ConcurrentModificationException;
+import java.util.StringJoiner;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -16,6 +20,9 @@ import org.apache.logging.log4j.Logger;
  * threads, so long as there are no writers. The write lock is exclusive. The
  * active writer is able to acquire read or write locks as long as it is active.
  *
+ * Like {@link StampedLock}, the lock also supports optimistic reads that do not
+ * lock at all, see {@link #tryOptimisticRead()}.
+ *
  * <!-- simplified lock used for this class -->
  *
  * @see SimpleLock
@@ -45,6 +52,45 @@ public class MultiReaderLock {
 	/** The thread that holds the write lock. */
 	private Thread activeWriter;
 
+	/** The number of writers waiting for the write lock. */
+	private int waitingWriters;
+
+	/** Whether new readers wait while a writer is waiting, so writers never starve. */
+	private final boolean writerPreference;
+
+	/**
+	 * The number of read locks held by each thread, only tracked with writer
+	 * preference.
+	 */
+	private final ThreadLocal<int[]> readHolds;
+
+	/**
+	 * Incremented when the first writer locks and when the last writer unlocks,
+	 * so it is odd exactly while a writer is active. Used by optimistic reads.
+	 */
+	private volatile long stamp;
+
+	/** Number of times the read lock was acquired, counted outside the lock. */
+	private final LongAdder readAcquisitions;
+
+	/** Number of times the write lock was acquired. */
+	private long writeAcquisitions;
+
+	/**
+	 * Histogram of read lock wait times, see {@link Metrics#bucket(int)}. Bucket 0
+	 * is not counted here, but derived from {@link #readAcquisitions}.
+	 */
+	private final long[] readWaits;
+
+	/** Histogram of write lock wait times, see {@link Metrics#bucket(int)}. */
+	private final long[] writeWaits;
+
+	/** Total time spent waiting for the read lock, in nanoseconds. */
+	private long readWaitNanos;
+
+	/** Total time spent waiting for the write lock, in nanoseconds. */
+	private long writeWaitNanos;
+
 	/** The log4j2 logger. */
 	private static final Logger log = LogManager.getLogger();
 
@@ -59,9 +105,23 @@ public class MultiReaderLock {
 	private final Object lock;
 
 	/**
-	 * Initializes a new simple read/write lock.
+	 * Initializes a new simple read/write lock without writer preference.
 	 */
 	public MultiReaderLock() {
+		this(false);
+	}
+
+	/**
+	 * Initializes a new simple read/write lock.
+	 *
+	 * With writer preference, readers wait while any writer is waiting, so a
+	 * steady stream of readers cannot keep a writer out forever. A thread that
+	 * already holds the read lock still acquires it again right away, since the
+	 * waiting writer is waiting for that thread.
+	 *
+	 * @param writerPreference whether waiting writers go before new readers
+	 */
+	public MultiReaderLock(boolean writerPreference) {
 		readerLock = new ReadLock();
 		writerLock = new WriteLock();
 
@@ -71,6 +131,14 @@ public class MultiReaderLock {
 		writers = 0;
 
 		activeWriter = null;
+		stamp = 2;
+
+		waitingWriters = 0;
+		this.writerPreference = writerPreference;
+		readHolds = writerPreference ? ThreadLocal.withInitial(() -> new int[1]) : null;
+		readAcquisitions = new LongAdder();
+		readWaits = new long[Metrics.BUCKETS];
+		writeWaits = new long[Metrics.BUCKETS];
 	}
 
 	/**
@@ -113,6 +181,61 @@ public class MultiReaderLock {
 		}
 	}
 
+	/**
+	 * Returns a snapshot of how this lock has been used so far.
+	 *
+	 * @return the lock metrics
+	 */
+	public Metrics metrics() {
+		synchronized (lock) {
+			return new Metrics(this);
+		}
+	}
+
+	/**
+	 * Starts an optimistic read, which does not lock at all. Read the shared data
+	 * and then call {@link #validate(long)} with the returned stamp; the data read
+	 * can only be trusted if the stamp is still valid. Otherwise, or if the stamp
+	 * returned is zero because a writer is active, read again under the read lock.
+	 *
+	 * Only use optimistic reads on data that is never changed once published,
+	 * such as an immutable object behind a volatile reference. Walking data that
+	 * writers change in place may fail or never finish before it can be
+	 * validated.
+	 *
+	 * @return a stamp to validate later, or zero if a writer is active
+	 */
+	public long tryOptimisticRead() {
+		long current = stamp;
+		return (current & 1) == 0 ? current : 0;
+	}
+
+	/**
+	 * Checks that no writer has been active since the stamp was returned by
+	 * {@link #tryOptimisticRead()}.
+	 *
+	 * @param stamp the stamp returned by {@link #tryOptimisticRead()}
+	 * @return true if the data read since then is consistent
+	 */
+	public boolean validate(long stamp) {
+		// keeps the reads of the shared data from moving after the stamp check
+		VarHandle.acquireFence();
+		return stamp != 0 && this.stamp == stamp;
+	}
+
+	/**
+	 * Records a successful acquisition in a wait time histogram.
+	 *
+	 * @param histogram the histogram to add to
+	 * @param start when the thread started waiting, or 0 if it did not wait
+	 * @return the time spent waiting, in nanoseconds
+	 */
+	private static long recordWait(long[] histogram, long start) {
+		long waited = start == 0 ? 0 : System.nanoTime() - start;
+		histogram[Metrics.bucketOf(waited)]++;
+		return waited;
+	}
+
 	/**
 	 * Determines whether the thread running this code and the writer thread are in
 	 * fact the same thread.
@@ -163,12 +286,27 @@ public class MultiReaderLock {
 		 */
 		@Override
 		public void lock() {
+			// kept out of the monitor, so an uncontended read only increments readers
+			int[] holds = writerPreference ? readHolds.get() : null;
+			readAcquisitions.increment();
+
 			try {
 				synchronized (lock) {
-					while (writers > 0 && !isActiveWriter()) {
+					long start = 0;
+					while ((writers > 0 || (holds != null && waitingWriters > 0 && holds[0] <= 0))
+							&& activeWriter != Thread.currentThread()) {
+						if (start == 0) {
+							start = System.nanoTime();
+						}
 						lock.wait();
 					}
 					readers++;
+					if (holds != null) {
+						holds[0]++;
+					}
+					if (start != 0) {
+						readWaitNanos += recordWait(readWaits, start);
+					}
 				}
 			}
 			catch (InterruptedException ex) {
@@ -185,11 +323,16 @@ public class MultiReaderLock {
 		 */
 		@Override
 		public void unlock() throws IllegalStateException {
+			int[] holds = writerPreference ? readHolds.get() : null;
+
 			synchronized (lock) {
 				if (readers <= 0) {
 					throw new IllegalStateException("o readers unlock.");
 				}
 				readers--;
+				if (holds != null) {
+					holds[0]--;
+				}
 				if (readers == 0) {
 					lock.notifyAll();
 				}
@@ -211,17 +354,35 @@ public class MultiReaderLock {
 		@Override
 		public void lock() {
 			synchronized (lock) {
+				long start = 0;
 				try {
-					while ((writers > 0 && !isActiveWriter()) || (readers > 0 && !isActiveWriter())) {
+					while ((writers > 0 || readers > 0) && activeWriter != Thread.currentThread()) {
+						if (start == 0) {
+							start = System.nanoTime();
+							waitingWriters++;
+						}
 						lock.wait();
 					}
-					writers++;
+					writeAcquisitions++;
+					writeWaitNanos += recordWait(writeWaits, start);
+					if (writers++ == 0) {
+						stamp++;
+						// optimistic readers must see the odd stamp before any change
+						VarHandle.storeStoreFence();
+					}
 					activeWriter = Thread.currentThread();
 				}
 				catch (InterruptedException ex) {
 					log.catching(Level.DEBUG, ex);
 					Thread.currentThread().interrupt();
 				}
+				finally {
+					if (start != 0) {
+						waitingWriters--;
+						// readers held back by this waiting writer check again
+						lock.notifyAll();
+					}
+				}
 			}
 		}
 
@@ -245,10 +406,200 @@ public class MultiReaderLock {
 				writers--;
 				if (writers == 0) {
 					activeWriter = null;
+					stamp++;
 					lock.notifyAll();
 				}
 			}
 		}
 
 	}
+
+	/**
+	 * Snapshot of how a lock has been used, for diagnosing contention. Wait times
+	 * are kept in histograms where bucket 0 counts acquisitions that waited less
+	 * than a microsecond (usually not at all), and every later bucket {@code i}
+	 * counts waits from 2<sup>i-1</sup> up to 2<sup>i</sup> microseconds, with the
+	 * last bucket also counting anything longer.
+	 */
+	public static class Metrics {
+		/** Number of buckets in each wait time histogram. */
+		public static final int BUCKETS = 24;
+
+		/** Number of active readers. */
+		private final int readers;
+
+		/** Number of active writers. */
+		private final int writers;
+
+		/** Number of writers waiting for the write lock. */
+		private final int waitingWriters;
+
+		/** Number of times the read lock was acquired. */
+		private final long readAcquisitions;
+
+		/** Number of times the write lock was acquired. */
+		private final long writeAcquisitions;
+
+		/** Total time spent waiting for the read lock, in nanoseconds. */
+		private final long readWaitNanos;
+
+		/** Total time spent waiting for the write lock, in nanoseconds. */
+		private final long writeWaitNanos;
+
+		/** Histogram of read lock wait times. */
+		private final long[] readWaits;
+
+		/** Histogram of write lock wait times. */
+		private final long[] writeWaits;
+
+		/**
+		 * Copies the metrics of a lock. Must be called while synchronized on the lock.
+		 *
+		 * @param source the lock to copy from
+		 */
+		private Metrics(MultiReaderLock source) {
+			this.readers = source.readers;
+			this.writers = source.writers;
+			this.waitingWriters = source.waitingWriters;
+			this.readAcquisitions = source.readAcquisitions.sum();
+			this.writeAcquisitions = source.writeAcquisitions;
+			this.readWaitNanos = source.readWaitNanos;
+			this.writeWaitNanos = source.writeWaitNanos;
+			this.readWaits = source.readWaits.clone();
+
+			// reads that did not wait are only counted as acquisitions
+			long waited = 0;
+			for (int i = 1; i < readWaits.length; i++) {
+				waited += readWaits[i];
+			}
+			this.readWaits[0] = Math.max(readAcquisitions - waited, 0);
+			this.writeWaits = source.writeWaits.clone();
+		}
+
+		/**
+		 * Returns the histogram bucket of a wait time.
+		 *
+		 * @param nanos the wait time in nanoseconds
+		 * @return the bucket the wait time falls in
+		 */
+		static int bucketOf(long nanos) {
+			long micros = nanos / 1000;
+			return Math.min(Long.SIZE - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+		}
+
+		/**
+		 * Returns the lowest wait time, in microseconds, counted by a bucket.
+		 *
+		 * @param bucket the bucket
+		 * @return the lowest wait time of the bucket
+		 */
+		public static long bucket(int bucket) {
+			return bucket == 0 ? 0 : 1L << (bucket - 1);
+		}
+
+		/**
+		 * Returns the number of active readers.
+		 *
+		 * @return the number of active readers
+		 */
+		public int readers() {
+			return readers;
+		}
+
+		/**
+		 * Returns the number of active writers.
+		 *
+		 * @return the number of active writers
+		 */
+		public int writers() {
+			return writers;
+		}
+
+		/**
+		 * Returns the number of writers waiting for the write lock.
+		 *
+		 * @return the number of waiting writers
+		 */
+		public int waitingWriters() {
+			return waitingWriters;
+		}
+
+		/**
+		 * Returns the number of times the read lock was acquired.
+		 *
+		 * @return the number of read acquisitions
+		 */
+		public long readAcquisitions() {
+			return readAcquisitions;
+		}
+
+		/**
+		 * Returns the number of times the write lock was acquired.
+		 *
+		 * @return the number of write acquisitions
+		 */
+		public long writeAcquisitions() {
+			return writeAcquisitions;
+		}
+
+		/**
+		 * Returns the total time spent waiting for the read lock.
+		 *
+		 * @return the total read wait time in nanoseconds
+		 */
+		public long readWaitNanos() {
+			return readWaitNanos;
+		}
+
+		/**
+		 * Returns the total time spent waiting for the write lock.
+		 *
+		 * @return the total write wait time in nanoseconds
+		 */
+		public long writeWaitNanos() {
+			return writeWaitNanos;
+		}
+
+		/**
+		 * Returns the histogram of read lock wait times.
+		 *
+		 * @return a copy of the read wait histogram
+		 */
+		public long[] readWaits() {
+			return readWaits.clone();
+		}
+
+		/**
+		 * Returns the histogram of write lock wait times.
+		 *
+		 * @return a copy of the write wait histogram
+		 */
+		public long[] writeWaits() {
+			return writeWaits.clone();
+		}
+
+		/**
+		 * Formats the non-empty buckets of a histogram.
+		 *
+		 * @param histogram the histogram to format
+		 * @return the buckets as lowest wait time in microseconds mapped to count
+		 */
+		private static String format(long[] histogram) {
+			StringJoiner joiner = new StringJoiner(", ", "{", "}");
+			for (int i = 0; i < histogram.length; i++) {
+				if (histogram[i] > 0) {
+					joiner.add(bucket(i) + "us=" + histogram[i]);
+				}
+			}
+			return joiner.toString();
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"readers=%d, writers=%d, waitingWriters=%d, reads=%d, writes=%d, readWaitMs=%d, writeWaitMs=%d, readWaits=%s, writeWaits=%s",
+					readers, writers, waitingWriters, readAcquisitions, writeAcquisitions, readWaitNanos / 1_000_000,
+					writeWaitNanos / 1_000_000, format(readWaits), format(writeWaits));
+		}
+	}
 }
@@ -5,12 +5,72 @@ import java.io.UncheckedIOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Multithreaded class of InvertedIndexProcessor class
  */
 public class MultiThreadProcessor {
 
+	/**
+	 * How the local index of each file is merged into the shared index.
+	 */
+	public enum Merge {
+		/**
+		 * Every local index is merged into the shared index on its own.
+		 */
+		FILE,
+
+		/**
+		 * Local indexes are merged pairwise by the workers, and only the few large
+		 * indexes left at the end are merged into the shared index.
+		 */
+		TREE,
+
+		/**
+		 * Every worker adds all of its files to one local index, and the local
+		 * indexes are merged into the shared index once the workers finish.
+		 */
+		WORKER;
+
+		/**
+		 * Returns the merge strategy with the given name, ignoring case.
+		 *
+		 * @param name the name of the strategy
+		 * @param backup the strategy to return if the name is unknown
+		 * @return the merge strategy
+		 */
+		public static Merge of(String name, Merge backup) {
+			for (Merge merge : values()) {
+				if (merge.name().equalsIgnoreCase(name)) {
+					return merge;
+				}
+			}
+			return backup;
+		}
+	}
+
+	/**
+	 * Offers logic to determine whether a given file input should iterate throug a
+	 * direcotry structure or should processText right away.
+	 *
+	 * @param path Given file contents
+	 * @param index map to be used for indexing data
+	 * @param workers threads to do job
+	 * @throws IOException if file is unreadable
+	 */
+	public static void processPath(Path path, InvertedIndexInterface index, WorkQueue workers) throws IOException {
+		processPath(path, index, workers, Merge.FILE);
+	}
+
 	/**
 	 * Offers logic to determine whether a given file input should iterate throug a
 	 * direcotry structure or should processText right away.
@@ -18,12 +78,28 @@ public class MultiThreadProcessor {
 	 * @param path Given file contents
 	 * @param index map to be used for indexing data
 	 * @param workers threads to do job
+	 * @param merge how local indexes are merged into the shared index
 	 * @throws IOException if file is unreadable
 	 */
-	public static void processPath(Path path, ThreadSafeInvertedIndex index, WorkQueue workers) throws IOException {
+	public static void processPath(Path path, InvertedIndexInterface index, WorkQueue workers, Merge merge)
+			throws IOException {
 
 		if (Files.isDirectory(path)) {
-			processDirectoryMultithreaded(path, index, workers);
+			switch (merge) {
+				case TREE -> {
+					TreeMerger merger = new TreeMerger();
+					processDirectoryMultithreaded(path, InvertedIndex::new, merger::add, workers);
+					workers.finish();
+					merger.mergeInto(index);
+				}
+				case WORKER -> {
+					WorkerMerger merger = new WorkerMerger();
+					processDirectoryMultithreaded(path, merger::local, local -> {}, workers);
+					workers.finish();
+					merger.mergeInto(index);
+				}
+				default -> processDirectoryMultithreaded(path, index, workers);
+			}
 		}
 		else {
 			workers.execute(() -> {
@@ -42,6 +118,44 @@ public class MultiThreadProcessor {
 		workers.finish();
 	}
 
+	/**
+	 * Processes each of the given files in its own task, and waits for them to
+	 * finish. Files that cannot be read are skipped by their task and reported
+	 * once every task is done, so callers can tell that the index is incomplete.
+	 *
+	 * @param files the files to process
+	 * @param index contains the structure for the read data
+	 * @param workers workers threads to do job
+	 * @throws IOException if any of the files could not be read, with the other
+	 *   failures suppressed
+	 */
+	public static void processFiles(Collection<Path> files, InvertedIndexInterface index, WorkQueue workers)
+			throws IOException {
+		ConcurrentLinkedQueue<IOException> failures = new ConcurrentLinkedQueue<>();
+
+		for (Path file : files) {
+			workers.execute(() -> {
+				try {
+					InvertedIndex localIndex = new InvertedIndex();
+					InvertedIndexProcessor.processText(file, localIndex);
+					index.addDistinctIndex(localIndex);
+				}
+				catch (IOException e) {
+					// the work queue would only log the exception, so it is rethrown below
+					failures.add(e);
+				}
+			});
+		}
+
+		workers.finish();
+
+		IOException failure = failures.poll();
+		if (failure != null) {
+			failures.forEach(failure::addSuppressed);
+			throw failure;
+		}
+	}
+
 	/**
 	 * Multi threaded version of processDirectory
 	 *
@@ -50,19 +164,34 @@ public class MultiThreadProcessor {
 	 * @param workers workers threads to do job
 	 * @throws IOException If file is unable to be read, then throw an exception.
 	 */
-	public static void processDirectoryMultithreaded(Path input, ThreadSafeInvertedIndex index, WorkQueue workers)
+	public static void processDirectoryMultithreaded(Path input, InvertedIndexInterface index, WorkQueue workers)
 			throws IOException {
+		processDirectoryMultithreaded(input, InvertedIndex::new, index::addDistinctIndex, workers);
+	}
+
+	/**
+	 * Multi threaded version of processDirectory, adding every file to the local
+	 * index from the supplier and then handing it to the consumer.
+	 *
+	 * @param input the directory
+	 * @param local supplies the local index to add a file to, from any worker
+	 * @param merger receives the local index of every file, from any worker
+	 * @param workers workers threads to do job
+	 * @throws IOException If file is unable to be read, then throw an exception.
+	 */
+	private static void processDirectoryMultithreaded(Path input, Supplier<InvertedIndex> local,
+			Consumer<InvertedIndex> merger, WorkQueue workers) throws IOException {
 		try (DirectoryStream<Path> stream = Files.newDirectoryStream(input)) {
 			for (Path entry : stream) {
 				if (Files.isDirectory(entry)) {
-					processDirectoryMultithreaded(entry, index, workers);
+					processDirectoryMultithreaded(entry, local, merger, workers);
 				}
 				else if (InvertedIndexProcessor.isTextFile(entry)) {
 					workers.execute(() -> {
 						try {
-							InvertedIndex localIndex = new InvertedIndex();
+							InvertedIndex localIndex = local.get();
 							InvertedIndexProcessor.processText(entry, localIndex);
-							index.addDistinctIndex(localIndex);
+							merger.accept(localIndex);
 						}
 						catch (IOException e) {
 							System.out.println("Unable to read file path!");
@@ -73,4 +202,120 @@ public class MultiThreadProcessor {
 			}
 		}
 	}
+
+	/**
+	 * Merges local indexes pairwise like a binary counter, so indexes are only
+	 * merged with others of a similar size. Level {@code n} holds at most one
+	 * index made of about {@code 2^n} files, and whichever worker finds the level
+	 * taken merges both and moves the result up a level. Workers merge different
+	 * pairs at the same time without touching the shared index.
+	 */
+	private static class TreeMerger {
+
+		/**
+		 * The waiting index of each level, or {@code null} if the level is empty.
+		 */
+		private final List<InvertedIndex> levels;
+
+		/**
+		 * Initializes a merger without any indexes.
+		 */
+		public TreeMerger() {
+			this.levels = new ArrayList<>();
+		}
+
+		/**
+		 * Adds the local index of a single file.
+		 *
+		 * @param localIndex the local index, not shared with other threads
+		 */
+		public void add(InvertedIndex localIndex) {
+			InvertedIndex merged = localIndex;
+			int level = 0;
+
+			while (true) {
+				InvertedIndex other;
+				synchronized (levels) {
+					while (levels.size() <= level) {
+						levels.add(null);
+					}
+
+					other = levels.get(level);
+					levels.set(level, other == null ? merged : null);
+				}
+
+				if (other == null) {
+					return;
+				}
+
+				merged.addDistinctIndex(other);
+				level++;
+			}
+		}
+
+		/**
+		 * Merges the indexes left on every level into the shared index, largest
+		 * first so it can adopt most of the data by reference. Must only be called
+		 * after every file is added.
+		 *
+		 * @param index the shared index
+		 */
+		public void mergeInto(InvertedIndexInterface index) {
+			synchronized (levels) {
+				for (int level = levels.size() - 1; level >= 0; level--) {
+					if (levels.get(level) != null) {
+						index.addDistinctIndex(levels.get(level));
+					}
+				}
+				levels.clear();
+			}
+		}
+	}
+	/**
+	 * Keeps one long-lived local index for every worker thread, so files are added
+	 * without any merging until the workers finish.
+	 */
+	private static class WorkerMerger {
+
+		/**
+		 * The local index of each worker thread.
+		 */
+		private final Map<Thread, InvertedIndex> locals;
+
+		/**
+		 * Initializes a merger without any indexes.
+		 */
+		public WorkerMerger() {
+			this.locals = new HashMap<>();
+		}
+
+		/**
+		 * Returns the local index of the current thread, creating it when needed.
+		 *
+		 * @return the local index of the current thread
+		 */
+		public InvertedIndex local() {
+			synchronized (locals) {
+				return locals.computeIfAbsent(Thread.currentThread(), thread -> new InvertedIndex());
+			}
+		}
+
+		/**
+		 * Merges the local index of every worker into the shared index, largest
+		 * first so it can adopt most of the data by reference. Must only be called
+		 * after the workers finish.
+		 *
+		 * @param index the shared index
+		 */
+		public void mergeInto(InvertedIndexInterface index) {
+			synchronized (locals) {
+				List<InvertedIndex> sorted = new ArrayList<>(locals.values());
+				sorted.sort(Comparator.comparingInt(InvertedIndex::numTotalWords).reversed());
+				for (InvertedIndex local : sorted) {
+					index.addDistinctIndex(local);
+				}
+				locals.clear();
+			}
+		}
+	}
 }
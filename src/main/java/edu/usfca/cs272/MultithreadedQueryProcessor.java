@@ -49,7 +49,7 @@ public class MultithreadedQueryProcessor implements QueryProcessorInterface {
 	 * @param partial boolean for choosing the search method
 	 * @param index thread safe class that contains the inverted index structure
 	 */
-	public MultithreadedQueryProcessor(WorkQueue workers, boolean partial, ThreadSafeInvertedIndex index) {
+	public MultithreadedQueryProcessor(WorkQueue workers, boolean partial, InvertedIndexInterface index) {
 		this.query = new TreeMap<>();
 		searchFunction = partial ? index::exactSearch : index::partialSearch;
 		lock = new MultiReaderLock();
@@ -91,12 +91,13 @@ public class MultithreadedQueryProcessor implements QueryProcessorInterface {
 	 */
 	@Override
 	public void queryProcessor(String line) throws IOException {
-		var buffer = TextParser.uniqueStems(line);
-		String processedQuery = String.join(" ", buffer);
+		// stemmed once outside the lock, and the key is checked as is
+		var analyzed = TextParser.analyzeQuery(line);
+		String processedQuery = analyzed.getKey();
 
 		lock.writeLock().lock();
 		try {
-			if (!buffer.isEmpty() && !hasQuery(processedQuery)) {
+			if (!analyzed.isEmpty() && !query.containsKey(processedQuery)) {
 				this.query.put(processedQuery, null);
 			}
 			else {
@@ -107,7 +108,7 @@ public class MultithreadedQueryProcessor implements QueryProcessorInterface {
 			lock.writeLock().unlock();
 		}
 
-		List<ThreadSafeInvertedIndex.SearchResult> currentResults = searchFunction.apply(buffer);
+		List<InvertedIndex.SearchResult> currentResults = searchFunction.apply(analyzed.getStems());
 
 		lock.writeLock().lock();
 		try {
@@ -126,10 +127,10 @@ public class MultithreadedQueryProcessor implements QueryProcessorInterface {
 	 */
 	@Override
 	public List<InvertedIndex.SearchResult> getQueryResults(String queryLine) {
+		String processedQuery = TextParser.analyzeQuery(queryLine).getKey();
+
 		lock.readLock().lock();
 		try {
-			var buffer = TextParser.uniqueStems(queryLine);
-			String processedQuery = String.join(" ", buffer);
 			return Collections.unmodifiableList(query.getOrDefault(processedQuery, Collections.emptyList()));
 		}
 		finally {
@@ -161,10 +162,10 @@ public class MultithreadedQueryProcessor implements QueryProcessorInterface {
 	 */
 	@Override
 	public boolean hasQuery(String queryLine) {
+		String processedQuery = TextParser.analyzeQuery(queryLine).getKey();
+
 		lock.readLock().lock();
 		try {
-			var buffer = TextParser.uniqueStems(queryLine);
-			String processedQuery = String.join(" ", buffer);
 			return query.containsKey(processedQuery);
 		}
 		finally {
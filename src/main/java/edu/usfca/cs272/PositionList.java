@@ -0,0 +1,218 @@
+package edu.usfca.cs272;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorted set of word positions stored in a growable primitive {@code int}
+ * array. Positions are expected to arrive in increasing order while a file is
+ * being processed, so adding a position is normally an append with no boxing
+ * or tree rebalancing. Out of order positions are still supported by inserting
+ * them in sorted order.
+ */
+public class PositionList extends AbstractSet<Integer> {
+
+	/**
+	 * Initial capacity used for a new position list.
+	 */
+	private static final int DEFAULT_CAPACITY = 4;
+
+	/**
+	 * Sorted positions, only the first {@link #size} elements are used.
+	 */
+	private int[] positions;
+
+	/**
+	 * Number of positions stored.
+	 */
+	private int size;
+
+	/**
+	 * Initializes an empty position list with the default capacity.
+	 */
+	public PositionList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Initializes an empty position list with the given capacity.
+	 *
+	 * @param capacity the initial capacity
+	 */
+	public PositionList(int capacity) {
+		positions = new int[Math.max(capacity, 1)];
+		size = 0;
+	}
+
+	/**
+	 * Adds a position to this list, keeping it sorted and free of duplicates.
+	 *
+	 * @param position the position to add
+	 * @return true if the position was not already present
+	 */
+	public boolean add(int position) {
+		if (size == 0 || positions[size - 1] < position) {
+			ensureCapacity(size + 1);
+			positions[size++] = position;
+			return true;
+		}
+
+		int index = Arrays.binarySearch(positions, 0, size, position);
+		if (index >= 0) {
+			return false;
+		}
+
+		index = -(index + 1);
+		ensureCapacity(size + 1);
+		System.arraycopy(positions, index, positions, index + 1, size - index);
+		positions[index] = position;
+		size++;
+		return true;
+	}
+
+	@Override
+	public boolean add(Integer position) {
+		return add(position.intValue());
+	}
+
+	/**
+	 * Adds all positions from another list, merging the two sorted arrays.
+	 *
+	 * @param other the positions to add
+	 * @return the number of positions that were not already present
+	 */
+	public int addAll(PositionList other) {
+		if (other.size == 0) {
+			return 0;
+		}
+
+		if (size == 0 || positions[size - 1] < other.positions[0]) {
+			ensureCapacity(size + other.size);
+			System.arraycopy(other.positions, 0, positions, size, other.size);
+			size += other.size;
+			return other.size;
+		}
+
+		int[] merged = new int[size + other.size];
+		int i = 0, j = 0, k = 0;
+
+		while (i < size && j < other.size) {
+			int a = positions[i];
+			int b = other.positions[j];
+
+			if (a < b) {
+				merged[k++] = a;
+				i++;
+			}
+			else if (b < a) {
+				merged[k++] = b;
+				j++;
+			}
+			else {
+				merged[k++] = a;
+				i++;
+				j++;
+			}
+		}
+
+		while (i < size) {
+			merged[k++] = positions[i++];
+		}
+
+		while (j < other.size) {
+			merged[k++] = other.positions[j++];
+		}
+
+		int added = k - size;
+		positions = merged;
+		size = k;
+		return added;
+	}
+
+	/**
+	 * Checks if the given position is in this list.
+	 *
+	 * @param position the position to look for
+	 * @return true if the position is present
+	 */
+	public boolean contains(int position) {
+		return Arrays.binarySearch(positions, 0, size, position) >= 0;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Integer position && contains(position.intValue());
+	}
+
+	/**
+	 * Returns the position at the given index in sorted order.
+	 *
+	 * @param index the index of the position
+	 * @return the position at that index
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public int get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		return positions[index];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a copy of the positions as a sorted array.
+	 *
+	 * @return the sorted positions
+	 */
+	public int[] toIntArray() {
+		return Arrays.copyOf(positions, size);
+	}
+
+	/**
+	 * Shrinks the backing array to the number of stored positions.
+	 */
+	public void trimToSize() {
+		if (positions.length > size) {
+			positions = Arrays.copyOf(positions, Math.max(size, 1));
+		}
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<>() {
+			/** Index of the next position to return. */
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public Integer next() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return positions[next++];
+			}
+		};
+	}
+
+	/**
+	 * Grows the backing array so it can hold at least the given number of
+	 * positions.
+	 *
+	 * @param capacity the minimum capacity needed
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > positions.length) {
+			positions = Arrays.copyOf(positions, Math.max(capacity, positions.length * 2));
+		}
+	}
+}
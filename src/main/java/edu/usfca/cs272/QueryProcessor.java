@@ -1,7 +1,5 @@
 package edu.usfca.cs272;
 
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
-
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collections;
@@ -11,9 +9,6 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.function.Function;
 
-import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
-
 /**
  * Processes queries that are used to as the worsd to be searched for from the
  * given indexed structures
@@ -32,10 +27,6 @@ public class QueryProcessor implements QueryProcessorInterface {
 	 * function indicating the search mode
 	 */
 	private final Function<Set<String>, List<InvertedIndex.SearchResult>> searchFunction;
-	/**
-	 * Intended to stem text
-	 */
-	private final Stemmer stemmer;
 
 	/**
 	 * Initializes the Query map with empty data structures.
@@ -43,9 +34,8 @@ public class QueryProcessor implements QueryProcessorInterface {
 	 * @param partial boolean for choosing the search method
 	 * @param index class that contains the inverted index structure
 	 */
-	public QueryProcessor(boolean partial, InvertedIndex index) {
+	public QueryProcessor(boolean partial, InvertedIndexInterface index) {
 		this.query = new TreeMap<>();
-		this.stemmer = new SnowballStemmer(ENGLISH);
 		searchFunction = partial ? index::exactSearch : index::partialSearch;
 	}
 
@@ -57,13 +47,11 @@ public class QueryProcessor implements QueryProcessorInterface {
 	 */
 	@Override
 	public void queryProcessor(String line) throws IOException {
+		var analyzed = TextParser.analyzeQuery(line);
 
-		var buffer = TextParser.uniqueStems(line, stemmer);
-		String processedQuery = String.join(" ", buffer);
-
-		if (!buffer.isEmpty() && !hasQuery(processedQuery)) {
-			List<InvertedIndex.SearchResult> currentResults = searchFunction.apply(buffer);
-			this.query.put(processedQuery, currentResults);
+		if (!analyzed.isEmpty() && !query.containsKey(analyzed.getKey())) {
+			List<InvertedIndex.SearchResult> currentResults = searchFunction.apply(analyzed.getStems());
+			this.query.put(analyzed.getKey(), currentResults);
 		}
 	}
 
@@ -75,8 +63,7 @@ public class QueryProcessor implements QueryProcessorInterface {
 	 */
 	@Override
 	public List<InvertedIndex.SearchResult> getQueryResults(String queryLine) {
-		var buffer = TextParser.uniqueStems(queryLine, stemmer);
-		String processedQuery = String.join(" ", buffer);
+		String processedQuery = TextParser.analyzeQuery(queryLine).getKey();
 		return Collections.unmodifiableList(query.getOrDefault(processedQuery, Collections.emptyList()));
 	}
 
@@ -98,9 +85,7 @@ public class QueryProcessor implements QueryProcessorInterface {
 	 */
 	@Override
 	public boolean hasQuery(String queryLine) {
-		var buffer = TextParser.uniqueStems(queryLine, stemmer);
-		String processedQuery = String.join(" ", buffer);
-		return query.containsKey(processedQuery);
+		return query.containsKey(TextParser.analyzeQuery(queryLine).getKey());
 	}
 
 	/**
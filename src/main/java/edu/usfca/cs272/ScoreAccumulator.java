@@ -0,0 +1,252 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Collects the match counts of a single query in primitive arrays indexed by
+ * document ID, so that evaluating a query does not allocate a search result for
+ * every matching location. Only the results that are finally returned are
+ * turned into {@link InvertedIndex.SearchResult} objects.
+ *
+ * Every thread reuses its own accumulator, so the arrays are only allocated
+ * again when the number of documents grows. An accumulator must be turned into
+ * results with {@link #results(LocationDictionary, int)} before the same thread
+ * starts another query.
+ */
+class ScoreAccumulator {
+
+	/**
+	 * The accumulator of each thread.
+	 */
+	private static final ThreadLocal<ScoreAccumulator> LOCAL = ThreadLocal.withInitial(ScoreAccumulator::new);
+
+	/**
+	 * Number of matching words found so far, indexed by document ID.
+	 */
+	private int[] counts;
+
+	/**
+	 * Total number of words of each matching document, indexed by document ID.
+	 */
+	private int[] totals;
+
+	/**
+	 * Document IDs with at least one match, in the order they were found.
+	 */
+	private int[] touched;
+
+	/**
+	 * Number of document IDs in {@link #touched}.
+	 */
+	private int size;
+
+	/**
+	 * Resolves document IDs to the locations used to break ties while selecting
+	 * results.
+	 */
+	private IntFunction<String> locations;
+
+	/**
+	 * Initializes an empty accumulator.
+	 */
+	private ScoreAccumulator() {
+		this.counts = new int[0];
+		this.totals = new int[0];
+		this.touched = new int[0];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the accumulator of the current thread, ready for a new query. Any
+	 * matches left over from a query that failed before its results were taken
+	 * are cleared first.
+	 *
+	 * @param documents the number of documents in the index
+	 * @return the empty accumulator of the current thread
+	 */
+	static ScoreAccumulator get(int documents) {
+		ScoreAccumulator accumulator = LOCAL.get();
+		accumulator.clear();
+		accumulator.grow(documents);
+		return accumulator;
+	}
+
+	/**
+	 * Resets the counts of every touched document ID, so the accumulator is empty
+	 * again.
+	 */
+	private void clear() {
+		for (int i = 0; i < size; i++) {
+			counts[touched[i]] = 0;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Makes room for at least the given number of documents, keeping the matches
+	 * accumulated so far.
+	 *
+	 * @param documents the number of documents
+	 */
+	private void grow(int documents) {
+		if (counts.length < documents) {
+			int capacity = Math.max(documents, counts.length * 2);
+			counts = Arrays.copyOf(counts, capacity);
+			totals = Arrays.copyOf(totals, capacity);
+			touched = Arrays.copyOf(touched, capacity);
+		}
+	}
+
+	/**
+	 * Adds matches of a word at a document. Document IDs past the size given to
+	 * {@link #get(int)} are allowed, for indexes that assign IDs while searching.
+	 *
+	 * @param id the document ID
+	 * @param frequency the number of times the word appears in the document
+	 * @param totalWords the total number of words in the document
+	 */
+	void add(int id, int frequency, int totalWords) {
+		if (id >= counts.length) {
+			grow(id + 1);
+		}
+		if (counts[id] == 0) {
+			touched[size++] = id;
+			totals[id] = totalWords;
+		}
+		counts[id] += frequency;
+	}
+
+	/**
+	 * Turns the best matches into sorted search results and clears the
+	 * accumulator. When there are more matches than requested, the best are
+	 * selected with a heap of document IDs bounded to {@code k} entries. Must be
+	 * called while the locations cannot change, since the results keep the
+	 * resolved location names rather than the dictionary.
+	 *
+	 * @param locations the locations used to resolve document IDs
+	 * @param k the maximum number of results to return
+	 * @return up to {@code k} of the best results, sorted
+	 */
+	List<InvertedIndex.SearchResult> results(LocationDictionary locations, int k) {
+		return results(locations::getLocation, k);
+	}
+
+	/**
+	 * Turns the best matches into sorted search results and clears the
+	 * accumulator, resolving document IDs with the given function instead of a
+	 * {@link LocationDictionary}.
+	 *
+	 * @param locations resolves a document ID to its location
+	 * @param k the maximum number of results to return
+	 * @return up to {@code k} of the best results, sorted
+	 * @see #results(LocationDictionary, int)
+	 */
+	List<InvertedIndex.SearchResult> results(IntFunction<String> locations, int k) {
+		this.locations = locations;
+		try {
+			int selected = size;
+			if (k < size) {
+				selected = Math.max(k, 0);
+				select(selected);
+			}
+
+			List<InvertedIndex.SearchResult> results = new ArrayList<>(selected);
+			for (int i = 0; i < selected; i++) {
+				int id = touched[i];
+				InvertedIndex.SearchResult result = new InvertedIndex.SearchResult(locations.apply(id));
+				result.updateCount(counts[id], totals[id]);
+				results.add(result);
+			}
+
+			Collections.sort(results);
+			return results;
+		}
+		finally {
+			clear();
+			this.locations = null;
+		}
+	}
+
+	/**
+	 * Moves the best {@code k} document IDs to the front of {@link #touched}. The
+	 * front is kept as a heap with the worst kept match at its root, so each
+	 * remaining match only needs to be compared against the root.
+	 *
+	 * @param k the number of document IDs to keep, less than the number of matches
+	 */
+	private void select(int k) {
+		if (k == 0) {
+			return;
+		}
+
+		for (int i = k / 2 - 1; i >= 0; i--) {
+			siftDown(i, k);
+		}
+
+		for (int i = k; i < size; i++) {
+			if (compare(touched[i], touched[0]) < 0) {
+				int swap = touched[0];
+				touched[0] = touched[i];
+				touched[i] = swap;
+				siftDown(0, k);
+			}
+		}
+	}
+
+	/**
+	 * Restores the heap below the given position, with the worst match at the
+	 * root.
+	 *
+	 * @param position the position to sift down from
+	 * @param heapSize the number of entries in the heap
+	 */
+	private void siftDown(int position, int heapSize) {
+		int id = touched[position];
+
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && compare(touched[child + 1], touched[child]) > 0) {
+				child++;
+			}
+			if (compare(touched[child], id) <= 0) {
+				break;
+			}
+			touched[position] = touched[child];
+			position = child;
+		}
+
+		touched[position] = id;
+	}
+
+	/**
+	 * Compares two matches in the same order as
+	 * {@link InvertedIndex.SearchResult#compareTo(InvertedIndex.SearchResult)}, so
+	 * better matches come first.
+	 *
+	 * @param first the first document ID
+	 * @param second the second document ID
+	 * @return a negative number if the first match is better, positive if it is
+	 *   worse, or zero if they are equal
+	 */
+	private int compare(int first, int second) {
+		int scoreComparison = Double.compare((double) counts[second] / totals[second],
+				(double) counts[first] / totals[first]);
+		if (scoreComparison != 0) {
+			return scoreComparison;
+		}
+
+		int countComparison = Integer.compare(counts[second], counts[first]);
+		if (countComparison != 0) {
+			return countComparison;
+		}
+
+		return locations.apply(first).compareToIgnoreCase(locations.apply(second));
+	}
+}
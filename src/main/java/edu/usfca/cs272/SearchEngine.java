@@ -22,7 +22,7 @@ public class SearchEngine {
 	 * A thread-safe version of the inverted index data structure. Stores words and
 	 * their associated positions. Final structure to contain the index information.
 	 */
-	private ThreadSafeInvertedIndex index;
+	private InvertedIndexInterface index;
 
 	/**
 	 * An instance that tracks and stores the history of search queries. Provides
@@ -39,7 +39,7 @@ public class SearchEngine {
 	 * @param index instance used for search operations.
 	 * @param searchHistory instance to track and manage search history.
 	 */
-	public SearchEngine(ThreadSafeInvertedIndex index, SearchHistory searchHistory) {
+	public SearchEngine(InvertedIndexInterface index, SearchHistory searchHistory) {
 		this.index = index;
 		this.searchHistory = searchHistory;
 	}
@@ -1,7 +1,10 @@
 package edu.usfca.cs272;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -22,11 +25,24 @@ public class SearchResultsServlet extends HttpServlet {
 	 */
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Name of the optional request parameter that limits how many results are
+	 * shown. {@link #DEFAULT_LIMIT} results are shown when it is missing or not a
+	 * positive number, with a link to show more.
+	 */
+	public static final String LIMIT_PARAMETER = "limit";
+
+	/**
+	 * Number of results shown on the first page, so normal searches only select
+	 * the top results instead of sorting every match.
+	 */
+	public static final int DEFAULT_LIMIT = 50;
+
 	/**
 	 * A thread-safe version of the inverted index data structure. Stores words and
 	 * their associated positions. Final structure to contain the index information.
 	 */
-	private InvertedIndex index;
+	private InvertedIndexInterface index;
 
 	/**
 	 * Template for the results page after searching for a query.
@@ -44,11 +60,11 @@ public class SearchResultsServlet extends HttpServlet {
 	 * Constructs a SearchResultsServlet with the provided index, and search
 	 * history.
 	 *
-	 * @param index The ThreadSafeInvertedIndex instance for search operations.
+	 * @param index The thread-safe index instance for search operations.
 	 * @param searchHistory The SearchHistory instance for managing search history.
 	 * @throws IOException throws exception if template is unreadable
 	 */
-	public SearchResultsServlet(ThreadSafeInvertedIndex index, SearchHistory searchHistory) throws IOException {
+	public SearchResultsServlet(InvertedIndexInterface index, SearchHistory searchHistory) throws IOException {
 		this.index = index;
 		resultsTemplate = SearchEngine.readResourceFile("Results.html");
 		this.searchHistory = searchHistory;
@@ -60,26 +76,33 @@ public class SearchResultsServlet extends HttpServlet {
 
 		searchHistory.addSearchedQuery(searchQuery);
 		
-		// TODO Not efficient
-		QueryProcessorInterface queryProcessor = new QueryProcessor("on".equals(request.getParameter("exact")), index);
+		boolean lucky = "lucky".equals(request.getParameter("action"));
+		boolean reverse = "on".equals(request.getParameter("reverse"));
+		int limit = getLimit(request);
 
-		queryProcessor.queryProcessor(searchQuery);
-		var results = new ArrayList<>(queryProcessor.getQueryResults(searchQuery));
-		
-		/* TODO 
-		var queries = TextParser.uniqueStems(request.getParameter("query"));
-		var results = index.search(queries, "on".equals(request.getParameter("exact"));
-		*/
+		boolean exact = "on".equals(request.getParameter("exact"));
+
+		// one extra result tells whether there are more. Reversed results start from
+		// the worst match, so those still need every result
+		int k = reverse ? Integer.MAX_VALUE : lucky ? 1 : limit + 1;
+		var queries = TextParser.uniqueStems(searchQuery);
+		List<InvertedIndex.SearchResult> results = new ArrayList<>(index.search(queries, exact, k));
 
-		if ("on".equals(request.getParameter("reverse"))) {
+		if (reverse) {
 			Collections.reverse(results);
 		}
 
-		if ("lucky".equals(request.getParameter("action")) && !results.isEmpty()) {
+		boolean more = results.size() > limit;
+		if (more) {
+			results = results.subList(0, limit);
+		}
+
+		if (lucky && !results.isEmpty()) {
 			response.sendRedirect(results.get(0).getWhere());
 		}
 		else {
-			String htmlResults = buildResultsHtmlResponse(searchQuery, results);
+			String next = more ? moreLink(searchQuery, exact, reverse, limit) : "";
+			String htmlResults = buildResultsHtmlResponse(searchQuery, results, next);
 			response.setContentType("text/html");
 			response.setCharacterEncoding("UTF-8");
 			PrintWriter out = response.getWriter();
@@ -88,6 +111,46 @@ public class SearchResultsServlet extends HttpServlet {
 		}
 	}
 
+	/**
+	 * Returns the number of results requested with {@link #LIMIT_PARAMETER}.
+	 *
+	 * @param request the search request
+	 * @return the requested number of results, or {@link #DEFAULT_LIMIT} if none
+	 *   was requested
+	 */
+	private static int getLimit(HttpServletRequest request) {
+		try {
+			int limit = Integer.parseInt(request.getParameter(LIMIT_PARAMETER));
+			// leaves room to ask for one extra result
+			return limit > 0 ? Math.min(limit, Integer.MAX_VALUE - 1) : DEFAULT_LIMIT;
+		}
+		catch (NumberFormatException e) {
+			return DEFAULT_LIMIT;
+		}
+	}
+
+	/**
+	 * Builds a link to the same search showing twice as many results.
+	 *
+	 * @param searchQuery the query that was searched for
+	 * @param exact whether the search was exact
+	 * @param reverse whether the results were reversed
+	 * @param limit the number of results shown now
+	 * @return the HTML of the link
+	 */
+	private static String moreLink(String searchQuery, boolean exact, boolean reverse, int limit) {
+		StringBuilder href = new StringBuilder("/results?query=").append(URLEncoder.encode(searchQuery, UTF_8));
+		if (exact) {
+			href.append("&amp;exact=on");
+		}
+		if (reverse) {
+			href.append("&amp;reverse=on");
+		}
+		href.append("&amp;").append(LIMIT_PARAMETER).append('=').append((int) Math.min(2L * limit, Integer.MAX_VALUE - 1));
+
+		return "<p><a class='index-link' href=\"" + href + "\">More results</a></p>";
+	}
+
 	/**
 	 * Constructs HTML content displaying search results. This method generates an
 	 * ordered list of search results, each result being a hyperlink to the
@@ -96,9 +159,11 @@ public class SearchResultsServlet extends HttpServlet {
 	 *
 	 * @param searchQuery The query string that was searched for.
 	 * @param results The list of search results to be displayed.
+	 * @param next HTML shown after the results, such as a link to more results
 	 * @return A String containing HTML content for the search results.
 	 */
-	private String buildResultsHtmlResponse(String searchQuery, List<InvertedIndex.SearchResult> results) {
+	private String buildResultsHtmlResponse(String searchQuery, List<InvertedIndex.SearchResult> results,
+			String next) {
 		StringBuilder resultsBuilder = new StringBuilder();
 
 		if (!results.isEmpty()) {
@@ -112,7 +177,7 @@ public class SearchResultsServlet extends HttpServlet {
 						.append("</a>")
 						.append("</li>");
 			}
-			resultsBuilder.append("</ol>");
+			resultsBuilder.append("</ol>").append(next);
 		}
 		else {
 			resultsBuilder.append("<p>No results generated</p>");
@@ -0,0 +1,429 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Thread-safe inverted index split into segments, similar to a log-structured
+ * merge tree. New data goes into a small active segment. Once the active segment
+ * holds enough words it is sealed, a new active segment takes its place, and a
+ * background worker freezes the sealed segment into a compact
+ * {@link FrozenInvertedIndex}. Whenever enough frozen segments of a similar
+ * size pile up, the worker merges them into one larger segment.
+ *
+ * The list of segments is immutable and replaced as a whole, so searches work
+ * against whichever list was current when they started and never wait on the
+ * background work. Only the active segment is locked, and only for as long as a
+ * single call to it takes.
+ */
+public class SegmentedInvertedIndex implements InvertedIndexInterface {
+
+	/**
+	 * Default number of words the active segment holds before it is sealed.
+	 */
+	public static final int DEFAULT_SEAL_THRESHOLD = 1 << 20;
+
+	/**
+	 * Default number of similar sized segments that are merged together.
+	 */
+	public static final int DEFAULT_MERGE_FACTOR = 4;
+
+	/**
+	 * Number of words the active segment holds before it is sealed.
+	 */
+	private final int sealThreshold;
+
+	/**
+	 * Number of similar sized frozen segments that are merged together.
+	 */
+	private final int mergeFactor;
+
+	/**
+	 * Single worker used to freeze and merge segments in the background.
+	 */
+	private final WorkQueue merger;
+
+	/**
+	 * Serializes writers so sealing never races with an add to the active segment.
+	 */
+	private final Object writeLock;
+
+	/**
+	 * Serializes replacing the list of segments.
+	 */
+	private final Object segmentLock;
+
+	/**
+	 * The current segments, replaced as a whole whenever they change.
+	 */
+	private volatile Segments segments;
+
+	/**
+	 * Number of words added to the active segment since it was created.
+	 */
+	private int activeSize;
+
+	/**
+	 * Initializes an empty index with the default seal threshold and merge factor.
+	 */
+	public SegmentedInvertedIndex() {
+		this(DEFAULT_SEAL_THRESHOLD, DEFAULT_MERGE_FACTOR);
+	}
+
+	/**
+	 * Initializes an empty index.
+	 *
+	 * @param sealThreshold number of words the active segment holds before it is
+	 *   sealed
+	 * @param mergeFactor number of similar sized segments that are merged together
+	 */
+	public SegmentedInvertedIndex(int sealThreshold, int mergeFactor) {
+		this.sealThreshold = Math.max(sealThreshold, 1);
+		this.mergeFactor = Math.max(mergeFactor, 2);
+		this.merger = new WorkQueue(1);
+		this.writeLock = new Object();
+		this.segmentLock = new Object();
+		this.segments = new Segments(new ThreadSafeInvertedIndex(), List.of());
+		this.activeSize = 0;
+	}
+
+	/**
+	 * The active segment and the sealed segments, oldest first. Sealed segments are
+	 * either a {@link ThreadSafeInvertedIndex} waiting to be frozen or a
+	 * {@link FrozenInvertedIndex}.
+	 */
+	private static class Segments {
+		/** The segment new data is added to. */
+		private final ThreadSafeInvertedIndex active;
+
+		/** The segments that no longer change. */
+		private final List<InvertedIndexInterface> sealed;
+
+		/**
+		 * Initializes the segments.
+		 *
+		 * @param active the segment new data is added to
+		 * @param sealed the segments that no longer change
+		 */
+		private Segments(ThreadSafeInvertedIndex active, List<InvertedIndexInterface> sealed) {
+			this.active = active;
+			this.sealed = sealed;
+		}
+
+		/**
+		 * Returns every segment, sealed segments first.
+		 *
+		 * @return every segment
+		 */
+		private List<InvertedIndexInterface> all() {
+			List<InvertedIndexInterface> all = new ArrayList<>(sealed);
+			all.add(active);
+			return all;
+		}
+	}
+
+	@Override
+	public void addData(String word, String location, Integer num) {
+		synchronized (writeLock) {
+			segments.active.addData(word, location, num);
+			activeSize++;
+			sealIfFull();
+		}
+	}
+
+	@Override
+	public void addAll(String[] words, String location, int start) {
+		synchronized (writeLock) {
+			segments.active.addAll(words, location, start);
+			activeSize += words.length;
+			sealIfFull();
+		}
+	}
+
+	@Override
+	public void addDistinctIndex(InvertedIndex localIndex) {
+		synchronized (writeLock) {
+			segments.active.addDistinctIndex(localIndex);
+			activeSize += localIndex.numTotalWords();
+			sealIfFull();
+		}
+	}
+
+	/**
+	 * Seals the active segment if it is full, and hands it to the background
+	 * worker to be frozen. Must be called while holding the write lock.
+	 */
+	private void sealIfFull() {
+		if (activeSize < sealThreshold) {
+			return;
+		}
+
+		ThreadSafeInvertedIndex sealed;
+		synchronized (segmentLock) {
+			Segments current = segments;
+			sealed = current.active;
+
+			List<InvertedIndexInterface> list = new ArrayList<>(current.sealed);
+			list.add(sealed);
+			segments = new Segments(new ThreadSafeInvertedIndex(), Collections.unmodifiableList(list));
+		}
+
+		activeSize = 0;
+		merger.execute(() -> {
+			replace(List.of(sealed), sealed.freeze());
+			mergeSegments();
+		});
+	}
+
+	/**
+	 * Replaces sealed segments with a single segment holding the same data.
+	 *
+	 * @param old the segments to replace
+	 * @param replacement the segment to put in their place
+	 */
+	private void replace(List<InvertedIndexInterface> old, InvertedIndexInterface replacement) {
+		synchronized (segmentLock) {
+			Segments current = segments;
+			List<InvertedIndexInterface> list = new ArrayList<>(current.sealed.size());
+			boolean added = false;
+
+			for (InvertedIndexInterface segment : current.sealed) {
+				if (old.stream().noneMatch(o -> o == segment)) {
+					list.add(segment);
+				}
+				else if (!added) {
+					list.add(replacement);
+					added = true;
+				}
+			}
+
+			segments = new Segments(current.active, Collections.unmodifiableList(list));
+		}
+	}
+
+	/**
+	 * Merges frozen segments of a similar size until no size tier holds
+	 * {@link #mergeFactor} or more of them. Segments are put in tiers by the power
+	 * of the merge factor their word count falls under, measured in multiples of
+	 * the seal threshold.
+	 */
+	private void mergeSegments() {
+		while (true) {
+			Map<Integer, List<InvertedIndexInterface>> tiers = new TreeMap<>();
+
+			for (InvertedIndexInterface segment : segments.sealed) {
+				if (segment instanceof FrozenInvertedIndex frozen) {
+					int tier = 0;
+					long size = frozen.numTotalWords() / sealThreshold;
+					while (size >= mergeFactor) {
+						size /= mergeFactor;
+						tier++;
+					}
+					tiers.computeIfAbsent(tier, t -> new ArrayList<>()).add(frozen);
+				}
+			}
+
+			List<InvertedIndexInterface> merge = tiers.values().stream()
+					.filter(tier -> tier.size() >= mergeFactor)
+					.findFirst()
+					.orElse(null);
+
+			if (merge == null) {
+				return;
+			}
+
+			InvertedIndex merged = new InvertedIndex();
+			for (InvertedIndexInterface segment : merge) {
+				((FrozenInvertedIndex) segment).addTo(merged);
+			}
+			replace(merge, merged.freeze());
+		}
+	}
+
+	/**
+	 * Waits for any background freezing and merging to finish, then stops the
+	 * background worker. The index can still be searched afterwards, but nothing
+	 * more should be added.
+	 */
+	public void shutdown() {
+		merger.join();
+	}
+
+	/**
+	 * Returns the number of segments, including the active segment.
+	 *
+	 * @return the number of segments
+	 */
+	public int numSegments() {
+		return segments.sealed.size() + 1;
+	}
+
+	/**
+	 * Combines every segment into a single mutable index.
+	 *
+	 * @param current the segments to combine
+	 * @return an index holding the data of every segment
+	 */
+	private static InvertedIndex combine(Segments current) {
+		InvertedIndex combined = new InvertedIndex();
+		for (InvertedIndexInterface segment : current.all()) {
+			CompressedInvertedIndex compressed = segment instanceof ThreadSafeInvertedIndex mutable ? mutable.freeze()
+					: (CompressedInvertedIndex) segment;
+			compressed.addTo(combined);
+		}
+		return combined;
+	}
+
+	@Override
+	public boolean hasCount(String location) {
+		return segments.all().stream().anyMatch(segment -> segment.hasCount(location));
+	}
+
+	@Override
+	public boolean hasWord(String word) {
+		return segments.all().stream().anyMatch(segment -> segment.hasWord(word));
+	}
+
+	@Override
+	public boolean hasLocation(String word, String location) {
+		return segments.all().stream().anyMatch(segment -> segment.hasLocation(word, location));
+	}
+
+	@Override
+	public boolean hasPosition(String word, String location, int position) {
+		return segments.all().stream().anyMatch(segment -> segment.hasPosition(word, location, position));
+	}
+
+	@Override
+	public SortedMap<String, Integer> getWordCounts() {
+		TreeMap<String, Integer> counts = new TreeMap<>();
+		for (InvertedIndexInterface segment : segments.all()) {
+			for (var entry : segment.getWordCounts().entrySet()) {
+				counts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+			}
+		}
+		return Collections.unmodifiableSortedMap(counts);
+	}
+
+	@Override
+	public Set<String> getWords() {
+		TreeSet<String> words = new TreeSet<>();
+		for (InvertedIndexInterface segment : segments.all()) {
+			words.addAll(segment.getWords());
+		}
+		return Collections.unmodifiableSet(words);
+	}
+
+	@Override
+	public int numWordFrequency(String word) {
+		return getLocations(word).size();
+	}
+
+	@Override
+	public int numTotalWordsForLocation(String location) {
+		return numTotalWordsForLocation(segments.all(), location);
+	}
+
+	/**
+	 * Sums the word count of a location across segments.
+	 *
+	 * @param all the segments to sum
+	 * @param location the location to look up
+	 * @return the total word count of the location
+	 */
+	private static int numTotalWordsForLocation(List<InvertedIndexInterface> all, String location) {
+		int total = 0;
+		for (InvertedIndexInterface segment : all) {
+			total += segment.numTotalWordsForLocation(location);
+		}
+		return total;
+	}
+
+	@Override
+	public int numWordFrequencyAtLocation(String word, String location) {
+		int total = 0;
+		for (InvertedIndexInterface segment : segments.all()) {
+			total += segment.numWordFrequencyAtLocation(word, location);
+		}
+		return total;
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		TreeSet<String> locations = new TreeSet<>();
+		for (InvertedIndexInterface segment : segments.all()) {
+			locations.addAll(segment.getLocations(word));
+		}
+		return Collections.unmodifiableSet(locations);
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String location) {
+		PositionList positions = new PositionList();
+		for (InvertedIndexInterface segment : segments.all()) {
+			for (int position : segment.getPositions(word, location)) {
+				positions.add(position);
+			}
+		}
+		return Collections.unmodifiableSet(positions);
+	}
+
+	@Override
+	public List<InvertedIndex.SearchResult> exactSearch(Set<String> queryWords) {
+		return search(queryWords, true, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<InvertedIndex.SearchResult> partialSearch(Set<String> queries) {
+		return search(queries, false, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Runs a search against every segment and combines the results. Counts and
+	 * word totals of a location are summed across segments, since the words of a
+	 * location may be split between segments.
+	 *
+	 * @param queryWords words in query line to be searched
+	 * @param isExact A flag to determine if the search should be exact or partial.
+	 * @param k the maximum number of results to return
+	 * @return up to {@code k} of the best search results, sorted
+	 */
+	@Override
+	public List<InvertedIndex.SearchResult> search(Set<String> queryWords, boolean isExact, int k) {
+		List<InvertedIndexInterface> all = segments.all();
+		if (all.size() == 1) {
+			return all.get(0).search(queryWords, isExact, k);
+		}
+
+		List<List<InvertedIndex.SearchResult>> parts = new ArrayList<>(all.size());
+		for (InvertedIndexInterface segment : all) {
+			parts.add(segment.search(queryWords, isExact));
+		}
+
+		return InvertedIndex.mergeResults(parts, location -> numTotalWordsForLocation(all, location), k);
+	}
+
+	@Override
+	public void writeJson(Path path) throws IOException {
+		combine(segments).writeJson(path);
+	}
+
+	@Override
+	public void writeBinary(Path path) throws IOException {
+		combine(segments).writeBinary(path);
+	}
+
+	@Override
+	public String toString() {
+		Segments current = segments;
+		return "SegmentedInvertedIndex{" + "active=" + activeSize + ", sealed=" + current.sealed + '}';
+	}
+}
@@ -0,0 +1,140 @@
+package edu.usfca.cs272;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Commits a live index in the background, so searches see recent changes
+ * through a snapshot without writers having to commit after every batch.
+ *
+ * Every commit freezes the whole index, so commits are spaced out by a time
+ * budget instead of following the writers. After each commit the publisher
+ * waits the interval, or {@link #BUDGET_FACTOR} - 1 times as long as the commit
+ * took if that is longer, so freezing never takes more than one part in
+ * {@link #BUDGET_FACTOR} of the time however large the index grows. A commit
+ * with nothing new to publish returns right away.
+ */
+public class SnapshotPublisher implements Closeable {
+
+	/**
+	 * Default shortest time between commits.
+	 */
+	public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+	/**
+	 * Commits take at most one part in this many of the time.
+	 */
+	public static final int BUDGET_FACTOR = 10;
+
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * The index to commit.
+	 */
+	private final InvertedIndexInterface index;
+
+	/**
+	 * Shortest time between commits, in milliseconds.
+	 */
+	private final long intervalMillis;
+
+	/**
+	 * The thread that commits the index.
+	 */
+	private final Thread thread;
+
+	/**
+	 * Waited on between commits, and notified when closing.
+	 */
+	private final Object sleeper;
+
+	/**
+	 * Whether the publisher was closed.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Initializes a publisher with the default interval.
+	 *
+	 * @param index the index to commit
+	 */
+	public SnapshotPublisher(InvertedIndexInterface index) {
+		this(index, DEFAULT_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Initializes a publisher.
+	 *
+	 * @param index the index to commit
+	 * @param intervalMillis shortest time between commits, in milliseconds
+	 */
+	public SnapshotPublisher(InvertedIndexInterface index, long intervalMillis) {
+		this.index = index;
+		this.intervalMillis = Math.max(intervalMillis, 1);
+		this.sleeper = new Object();
+		this.closed = false;
+		this.thread = new Thread(this::publish, "snapshot-publisher");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts committing in the background.
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * Stops committing, and waits for a commit that is running to finish. The
+	 * thread is woken up instead of interrupted, so a commit is never interrupted
+	 * while it waits for the index lock.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		synchronized (sleeper) {
+			sleeper.notifyAll();
+		}
+
+		try {
+			thread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Commits the index and waits within the time budget until closed.
+	 */
+	private void publish() {
+		try {
+			while (!closed) {
+				long start = System.nanoTime();
+				index.commit();
+				long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				long wait = Math.max(intervalMillis, elapsed * (BUDGET_FACTOR - 1));
+				log.debug("Committed in {} ms, next commit in {} ms", elapsed, wait);
+
+				synchronized (sleeper) {
+					if (!closed) {
+						sleeper.wait(wait);
+					}
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		log.debug("Stopped publishing snapshots");
+	}
+
+	@Override
+	public String toString() {
+		return "SnapshotPublisher{" + "intervalMillis=" + intervalMillis + ", closed=" + closed + '}';
+	}
+}
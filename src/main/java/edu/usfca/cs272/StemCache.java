@@ -0,0 +1,142 @@
+package edu.usfca.cs272;
+
+import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * A bounded, thread-safe cache from words to their stems. Most of the words in
+ * any text are a few thousand common ones, so most calls are answered from the
+ * cache without running the stemmer at all.
+ *
+ * Words that are not cached are stemmed by a stemmer confined to the calling
+ * thread, since stemmers keep state between calls and cannot be shared. Once the
+ * cache is full, new words are still stemmed but no longer cached. The common
+ * words are seen first, so they are almost always the ones kept.
+ */
+public class StemCache implements Stemmer {
+
+	/**
+	 * The default maximum number of cached words.
+	 */
+	public static final int DEFAULT_CAPACITY = 100_000;
+
+	/**
+	 * The cache shared by every thread that stems English text.
+	 */
+	public static final StemCache SHARED = new StemCache(() -> new SnowballStemmer(ENGLISH), DEFAULT_CAPACITY);
+
+	/**
+	 * The stem of every cached word.
+	 */
+	private final ConcurrentHashMap<String, String> stems;
+
+	/**
+	 * The stemmer of each thread, used for words that are not cached.
+	 */
+	private final ThreadLocal<Stemmer> stemmers;
+
+	/**
+	 * The maximum number of cached words.
+	 */
+	private final int capacity;
+
+	/**
+	 * The number of words found in the cache.
+	 */
+	private final LongAdder hits;
+
+	/**
+	 * The number of words that had to be stemmed.
+	 */
+	private final LongAdder misses;
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param stemmers creates the stemmer of each thread
+	 * @param capacity the maximum number of cached words
+	 */
+	public StemCache(Supplier<? extends Stemmer> stemmers, int capacity) {
+		this.stems = new ConcurrentHashMap<>();
+		this.stemmers = ThreadLocal.withInitial(stemmers);
+		this.capacity = capacity;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+
+	/**
+	 * Returns the stem of a word, stemming and caching it if needed.
+	 *
+	 * @param word the cleaned word to stem
+	 * @return the stem of the word
+	 */
+	public String stem(String word) {
+		String stem = stems.get(word);
+		if (stem != null) {
+			hits.increment();
+			return stem;
+		}
+
+		misses.increment();
+		stem = stemmers.get().stem(word).toString();
+		if (stems.size() < capacity) {
+			stems.putIfAbsent(word, stem);
+		}
+		return stem;
+	}
+
+	@Override
+	public CharSequence stem(CharSequence word) {
+		return stem(word.toString());
+	}
+
+	/**
+	 * Returns the number of words found in the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of words that had to be stemmed.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of cached words.
+	 *
+	 * @return the number of cached words
+	 */
+	public int size() {
+		return stems.size();
+	}
+
+	/**
+	 * Removes every cached word and resets the statistics.
+	 */
+	public void clear() {
+		stems.clear();
+		hits.reset();
+		misses.reset();
+	}
+
+	@Override
+	public String toString() {
+		long hit = getHits();
+		long total = hit + getMisses();
+		return String.format("StemCache{size=%d, capacity=%d, hits=%d, misses=%d, hitRate=%.1f%%}", size(), capacity,
+				hit, total - hit, total == 0 ? 0.0 : 100.0 * hit / total);
+	}
+}
@@ -0,0 +1,553 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Thread-safe inverted index split into stripes by the first character of each
+ * word, where every stripe is a separately locked {@link ThreadSafeInvertedIndex}.
+ * Merging a local index only locks each stripe while its own words are added,
+ * so workers merging at the same time mostly work on different stripes instead
+ * of waiting for one global lock.
+ *
+ * Since every word starting with the same character is in the same stripe,
+ * both exact and partial searches only visit the stripes of the query words.
+ * The word count of a location is split across stripes, and is summed whenever
+ * it is needed.
+ *
+ * Committing publishes the latest snapshot of every stripe together as one
+ * immutable index, returned by {@link #snapshot()} until the next commit.
+ */
+public class StripedInvertedIndex implements InvertedIndexInterface {
+
+	/**
+	 * Default number of stripes.
+	 */
+	public static final int DEFAULT_STRIPES = 16;
+
+	/**
+	 * The stripes, in order of the characters they hold.
+	 */
+	private final ThreadSafeInvertedIndex[] stripes;
+
+	/**
+	 * The snapshots of every stripe published by the latest commit, or null if
+	 * nothing was committed yet.
+	 */
+	private volatile Snapshot published;
+
+	/**
+	 * Held while committing, so a slower commit never replaces a newer one.
+	 */
+	private final Object commitLock;
+
+	/**
+	 * Initializes an empty index with the default number of stripes.
+	 */
+	public StripedInvertedIndex() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Initializes an empty index.
+	 *
+	 * @param stripes the number of stripes
+	 */
+	public StripedInvertedIndex(int stripes) {
+		this(stripes, false);
+	}
+
+	/**
+	 * Initializes an empty index.
+	 *
+	 * @param stripes the number of stripes
+	 * @param writerPreference whether waiting writers go before new readers in
+	 *   every stripe
+	 */
+	public StripedInvertedIndex(int stripes, boolean writerPreference) {
+		this.stripes = new ThreadSafeInvertedIndex[Math.max(stripes, 1)];
+		for (int i = 0; i < this.stripes.length; i++) {
+			this.stripes[i] = new ThreadSafeInvertedIndex(writerPreference);
+		}
+		this.published = null;
+		this.commitLock = new Object();
+	}
+
+	/**
+	 * Returns the stripe a word belongs to. Letters from a to z are spread evenly
+	 * across the stripes, anything before goes to the first stripe and anything
+	 * after to the last, which keeps the stripes in sorted order.
+	 *
+	 * @param word the word or prefix
+	 * @return the index of the stripe
+	 */
+	private int stripeIndex(String word) {
+		return stripeIndex(word, stripes.length);
+	}
+
+	/**
+	 * Returns the stripe a word belongs to out of the given number of stripes.
+	 *
+	 * @param word the word or prefix
+	 * @param stripes the number of stripes
+	 * @return the index of the stripe
+	 * @see #stripeIndex(String)
+	 */
+	private static int stripeIndex(String word, int stripes) {
+		if (word.isEmpty()) {
+			return 0;
+		}
+
+		int letter = Math.min(Math.max(word.charAt(0) - 'a', 0), 26);
+		return Math.min(letter * stripes / 26, stripes - 1);
+	}
+
+	/**
+	 * Returns the stripe a word belongs to.
+	 *
+	 * @param word the word or prefix
+	 * @return the stripe
+	 */
+	private ThreadSafeInvertedIndex stripe(String word) {
+		return stripes[stripeIndex(word)];
+	}
+
+	@Override
+	public void addData(String word, String location, Integer num) {
+		stripe(word).addData(word, location, num);
+	}
+
+	@Override
+	public void addAll(String[] words, String location, int start) {
+		InvertedIndex localIndex = new InvertedIndex();
+		localIndex.addAll(words, location, start);
+		addDistinctIndex(localIndex);
+	}
+
+	@Override
+	public void addDistinctIndex(InvertedIndex localIndex) {
+		LocationDictionary localLocations = localIndex.locationDictionary();
+		InvertedIndex[] parts = new InvertedIndex[stripes.length];
+
+		// split the local index by stripe first, so each stripe is only locked once
+		for (var wordEntry : localIndex.postings().entrySet()) {
+			String word = wordEntry.getKey();
+			int stripe = stripeIndex(word);
+
+			if (parts[stripe] == null) {
+				parts[stripe] = new InvertedIndex();
+			}
+
+			for (var locationEntry : wordEntry.getValue().entrySet()) {
+				parts[stripe].addPositions(word, localLocations.getLocation(locationEntry.getKey()), locationEntry.getValue());
+			}
+		}
+
+		for (int stripe = 0; stripe < parts.length; stripe++) {
+			if (parts[stripe] != null) {
+				stripes[stripe].addDistinctIndex(parts[stripe]);
+			}
+		}
+	}
+
+	/**
+	 * Removes the given locations from every stripe. Each stripe is locked on its
+	 * own, so searches may briefly see a location removed from some stripes only.
+	 *
+	 * @param locations the locations to remove
+	 */
+	@Override
+	public void removeLocations(Collection<String> locations) {
+		for (ThreadSafeInvertedIndex stripe : stripes) {
+			stripe.removeLocations(locations);
+		}
+	}
+
+	@Override
+	public boolean hasCount(String location) {
+		return hasCount(stripes, location);
+	}
+
+	/**
+	 * Checks if any of the stripes has a word count for the location.
+	 *
+	 * @param stripes the stripes to check
+	 * @param location the location
+	 * @return true if the location has words in any stripe
+	 */
+	private static boolean hasCount(InvertedIndexInterface[] stripes, String location) {
+		for (InvertedIndexInterface stripe : stripes) {
+			if (stripe.hasCount(location)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean hasWord(String word) {
+		return stripe(word).hasWord(word);
+	}
+
+	@Override
+	public boolean hasLocation(String word, String location) {
+		return stripe(word).hasLocation(word, location);
+	}
+
+	@Override
+	public boolean hasPosition(String word, String location, int position) {
+		return stripe(word).hasPosition(word, location, position);
+	}
+
+	@Override
+	public SortedMap<String, Integer> getWordCounts() {
+		return getWordCounts(stripes);
+	}
+
+	/**
+	 * Sums the word counts of every location across the stripes.
+	 *
+	 * @param stripes the stripes to combine
+	 * @return the combined word counts
+	 */
+	private static SortedMap<String, Integer> getWordCounts(InvertedIndexInterface[] stripes) {
+		TreeMap<String, Integer> counts = new TreeMap<>();
+		for (InvertedIndexInterface stripe : stripes) {
+			for (var entry : stripe.getWordCounts().entrySet()) {
+				counts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+			}
+		}
+		return Collections.unmodifiableSortedMap(counts);
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return getWords(stripes);
+	}
+
+	/**
+	 * Combines the words of every stripe.
+	 *
+	 * @param stripes the stripes to combine
+	 * @return the combined words
+	 */
+	private static Set<String> getWords(InvertedIndexInterface[] stripes) {
+		TreeSet<String> words = new TreeSet<>();
+		for (InvertedIndexInterface stripe : stripes) {
+			words.addAll(stripe.getWords());
+		}
+		return Collections.unmodifiableSet(words);
+	}
+
+	@Override
+	public int numWordFrequency(String word) {
+		return stripe(word).numWordFrequency(word);
+	}
+
+	@Override
+	public int numTotalWordsForLocation(String location) {
+		return numTotalWordsForLocation(stripes, location);
+	}
+
+	/**
+	 * Sums the word count of a location across the stripes.
+	 *
+	 * @param stripes the stripes to combine
+	 * @param location the location
+	 * @return the total word count of the location
+	 */
+	private static int numTotalWordsForLocation(InvertedIndexInterface[] stripes, String location) {
+		int total = 0;
+		for (InvertedIndexInterface stripe : stripes) {
+			total += stripe.numTotalWordsForLocation(location);
+		}
+		return total;
+	}
+
+	@Override
+	public int numWordFrequencyAtLocation(String word, String location) {
+		return stripe(word).numWordFrequencyAtLocation(word, location);
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		return stripe(word).getLocations(word);
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String location) {
+		return stripe(word).getPositions(word, location);
+	}
+
+	@Override
+	public List<InvertedIndex.SearchResult> exactSearch(Set<String> queryWords) {
+		return search(queryWords, true, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<InvertedIndex.SearchResult> partialSearch(Set<String> queries) {
+		return search(queries, false, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Searches only the stripes holding the query words and combines the results,
+	 * scoring each location against its word count summed across every stripe.
+	 *
+	 * @param queryWords words in query line to be searched
+	 * @param isExact A flag to determine if the search should be exact or partial.
+	 * @param k the maximum number of results to return
+	 * @return up to {@code k} of the best search results, sorted
+	 */
+	@Override
+	public List<InvertedIndex.SearchResult> search(Set<String> queryWords, boolean isExact, int k) {
+		return search(stripes, queryWords, isExact, k);
+	}
+
+	/**
+	 * Searches only the stripes holding the query words and combines the results.
+	 *
+	 * @param stripes the stripes to search
+	 * @param queryWords words in query line to be searched
+	 * @param isExact A flag to determine if the search should be exact or partial.
+	 * @param k the maximum number of results to return
+	 * @return up to {@code k} of the best search results, sorted
+	 * @see #search(Set, boolean, int)
+	 */
+	private static List<InvertedIndex.SearchResult> search(InvertedIndexInterface[] stripes, Set<String> queryWords,
+			boolean isExact, int k) {
+		TreeMap<Integer, Set<String>> grouped = new TreeMap<>();
+		for (String query : queryWords) {
+			grouped.computeIfAbsent(stripeIndex(query, stripes.length), stripe -> new TreeSet<>()).add(query);
+		}
+
+		List<List<InvertedIndex.SearchResult>> parts = new ArrayList<>(grouped.size());
+		for (var entry : grouped.entrySet()) {
+			parts.add(stripes[entry.getKey()].search(entry.getValue(), isExact));
+		}
+
+		return InvertedIndex.mergeResults(parts, location -> numTotalWordsForLocation(stripes, location), k);
+	}
+
+	/**
+	 * Commits a snapshot of every stripe, see
+	 * {@link ThreadSafeInvertedIndex#commit()}, and publishes them together as
+	 * the snapshot of this index.
+	 */
+	@Override
+	public void commit() {
+		publish();
+	}
+
+	/**
+	 * Commits every stripe and publishes their snapshots together.
+	 *
+	 * @return the published snapshot
+	 */
+	private Snapshot publish() {
+		synchronized (commitLock) {
+			FrozenInvertedIndex[] frozen = new FrozenInvertedIndex[stripes.length];
+			for (int i = 0; i < stripes.length; i++) {
+				stripes[i].commit();
+				frozen[i] = stripes[i].snapshot();
+			}
+
+			Snapshot snapshot = new Snapshot(frozen);
+			published = snapshot;
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Returns the snapshots of every stripe published by the last commit, as one
+	 * immutable index that does not include changes made since. Only the first
+	 * call commits if nothing was committed yet.
+	 *
+	 * @return the last committed snapshot
+	 */
+	@Override
+	public InvertedIndexInterface snapshot() {
+		Snapshot snapshot = published;
+		return snapshot != null ? snapshot : publish();
+	}
+
+	/**
+	 * Returns how the lock of each stripe has been used, see
+	 * {@link ThreadSafeInvertedIndex#lockMetrics()}.
+	 *
+	 * @return the lock metrics of every stripe, in stripe order
+	 */
+	public List<MultiReaderLock.Metrics> lockMetrics() {
+		List<MultiReaderLock.Metrics> metrics = new ArrayList<>(stripes.length);
+		for (ThreadSafeInvertedIndex stripe : stripes) {
+			metrics.add(stripe.lockMetrics());
+		}
+		return metrics;
+	}
+
+	/**
+	 * Copies every stripe into an immutable, compact index.
+	 *
+	 * @return the frozen index
+	 */
+	public FrozenInvertedIndex freeze() {
+		FrozenInvertedIndex[] frozen = new FrozenInvertedIndex[stripes.length];
+		for (int i = 0; i < stripes.length; i++) {
+			frozen[i] = stripes[i].freeze();
+		}
+		return combine(frozen);
+	}
+
+	/**
+	 * Combines frozen stripes into a single immutable, compact index.
+	 *
+	 * @param stripes the frozen stripes
+	 * @return the combined index
+	 */
+	private static FrozenInvertedIndex combine(FrozenInvertedIndex[] stripes) {
+		InvertedIndex combined = new InvertedIndex();
+		for (FrozenInvertedIndex stripe : stripes) {
+			stripe.addTo(combined);
+		}
+		return combined.freeze();
+	}
+
+	@Override
+	public void writeJson(Path path) throws IOException {
+		freeze().writeJson(path);
+	}
+
+	@Override
+	public void writeBinary(Path path) throws IOException {
+		freeze().writeBinary(path);
+	}
+
+	@Override
+	public String toString() {
+		return "StripedInvertedIndex{" + "stripes=" + stripes.length + ", words=" + getWords().size() + '}';
+	}
+
+	/**
+	 * Immutable view of the frozen stripes published by one commit. Reads are
+	 * routed to the stripes the same way as in the live index, without any
+	 * locking. Changing it throws {@link UnsupportedOperationException}.
+	 */
+	private static class Snapshot implements InvertedIndexInterface {
+
+		/**
+		 * The frozen stripes, in order of the characters they hold.
+		 */
+		private final FrozenInvertedIndex[] stripes;
+
+		/**
+		 * Initializes the snapshot.
+		 *
+		 * @param stripes the frozen stripes
+		 */
+		private Snapshot(FrozenInvertedIndex[] stripes) {
+			this.stripes = stripes;
+		}
+
+		/**
+		 * Returns the frozen stripe a word belongs to.
+		 *
+		 * @param word the word or prefix
+		 * @return the stripe
+		 */
+		private FrozenInvertedIndex stripe(String word) {
+			return stripes[stripeIndex(word, stripes.length)];
+		}
+
+		@Override
+		public boolean hasCount(String location) {
+			return StripedInvertedIndex.hasCount(stripes, location);
+		}
+
+		@Override
+		public boolean hasWord(String word) {
+			return stripe(word).hasWord(word);
+		}
+
+		@Override
+		public boolean hasLocation(String word, String location) {
+			return stripe(word).hasLocation(word, location);
+		}
+
+		@Override
+		public boolean hasPosition(String word, String location, int position) {
+			return stripe(word).hasPosition(word, location, position);
+		}
+
+		@Override
+		public SortedMap<String, Integer> getWordCounts() {
+			return StripedInvertedIndex.getWordCounts(stripes);
+		}
+
+		@Override
+		public Set<String> getWords() {
+			return StripedInvertedIndex.getWords(stripes);
+		}
+
+		@Override
+		public int numWordFrequency(String word) {
+			return stripe(word).numWordFrequency(word);
+		}
+
+		@Override
+		public int numTotalWordsForLocation(String location) {
+			return StripedInvertedIndex.numTotalWordsForLocation(stripes, location);
+		}
+
+		@Override
+		public int numWordFrequencyAtLocation(String word, String location) {
+			return stripe(word).numWordFrequencyAtLocation(word, location);
+		}
+
+		@Override
+		public Set<String> getLocations(String word) {
+			return stripe(word).getLocations(word);
+		}
+
+		@Override
+		public Set<Integer> getPositions(String word, String location) {
+			return stripe(word).getPositions(word, location);
+		}
+
+		@Override
+		public List<InvertedIndex.SearchResult> exactSearch(Set<String> queryWords) {
+			return search(queryWords, true, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public List<InvertedIndex.SearchResult> partialSearch(Set<String> queries) {
+			return search(queries, false, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public List<InvertedIndex.SearchResult> search(Set<String> queryWords, boolean isExact, int k) {
+			return StripedInvertedIndex.search(stripes, queryWords, isExact, k);
+		}
+
+		@Override
+		public void writeJson(Path path) throws IOException {
+			combine(stripes).writeJson(path);
+		}
+
+		@Override
+		public void writeBinary(Path path) throws IOException {
+			combine(stripes).writeBinary(path);
+		}
+
+		@Override
+		public String toString() {
+			return "StripedInvertedIndex.Snapshot{" + "stripes=" + stripes.length + '}';
+		}
+	}
+}
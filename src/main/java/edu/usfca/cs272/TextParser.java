@@ -1,7 +1,6 @@
 package edu.usfca.cs272;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -11,12 +10,12 @@ import java.nio.file.Path;
 import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
 
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM;
 
 /**
  * Utility class for parsing, cleaning, and stemming text and text files into
@@ -33,6 +32,12 @@ public class TextParser {
 	 */
 	public static final Pattern CLEAN_REGEX = Pattern.compile("(?U)[^\\p{Alpha}\\p{Space}]+");
 
+	/**
+	 * The only letter {@link String#toLowerCase()} lowercases depending on the
+	 * letters around it.
+	 */
+	private static final char CAPITAL_SIGMA = '\u03A3';
+
 	/**
 	 * Removes any unwanted characters or formatting from the input text. Normalizes
 	 * the text to form NFD and converts to lowercase
@@ -41,7 +46,7 @@ public class TextParser {
 	 * @return cleaned text
 	 */
 	public static String clean(String text) {
-		String cleaned = Normalizer.normalize(text, Normalizer.Form.NFD);
+		String cleaned = decompose(text);
 		cleaned = CLEAN_REGEX.matcher(cleaned).replaceAll("");
 		return cleaned.toLowerCase();
 	}
@@ -58,11 +63,116 @@ public class TextParser {
 	}
 
 	/**
+	 * Cleans and splits text in a single pass over its characters, returning the
+	 * same words as {@code split(clean(text))} without building the intermediate
+	 * strings. Letters are collected into words, whitespace ends a word, and
+	 * everything else is dropped. Words are lowercased one at a time, which gives
+	 * the same result as lowercasing the whole cleaned text for every letter but
+	 * the Greek capital sigma, so text containing it is still cleaned and split
+	 * separately.
+	 *
 	 * @param text text to be parsed
 	 * @return returns cleaned and splitted text
+	 * @see #clean(String)
+	 * @see #split(String)
 	 */
 	public static String[] parse(String text) {
-		return split(clean(text));
+		String normalized = decompose(text);
+		if (normalized.indexOf(CAPITAL_SIGMA) >= 0) {
+			// how sigma is lowercased depends on the text around it
+			return split(clean(text));
+		}
+
+		ArrayList<String> words = new ArrayList<>();
+		StringBuilder word = new StringBuilder();
+
+		// split keeps an empty first word if the stripped text starts with a space
+		// that String#strip does not remove, such as a non-breaking space
+		boolean started = false;
+		boolean leadingEmpty = false;
+
+		int i = 0;
+		while (i < normalized.length()) {
+			int c = normalized.codePointAt(i);
+			i += Character.charCount(c);
+
+			if (isLetter(c)) {
+				if (leadingEmpty) {
+					words.add("");
+					leadingEmpty = false;
+				}
+				started = true;
+				word.appendCodePoint(c);
+			}
+			else if (isSpace(c)) {
+				if (!started && !Character.isWhitespace(c)) {
+					started = true;
+					leadingEmpty = true;
+				}
+				if (word.length() > 0) {
+					words.add(word.toString().toLowerCase());
+					word.setLength(0);
+				}
+			}
+		}
+
+		if (word.length() > 0) {
+			words.add(word.toString().toLowerCase());
+		}
+
+		return words.toArray(String[]::new);
+	}
+
+	/**
+	 * Normalizes text to form NFD, returning ASCII text as is since decomposing it
+	 * never changes anything. Most text is plain ASCII, and checking for it is much
+	 * cheaper than normalizing it.
+	 *
+	 * @param text text to be normalized
+	 * @return the normalized text, or the same text if it is all ASCII
+	 */
+	private static String decompose(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) >= 0x80) {
+				return Normalizer.normalize(text, Normalizer.Form.NFD);
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * Checks if a character is a letter the same way as {@code \p{Alpha}}
+	 * in {@link #CLEAN_REGEX}, without a table lookup for ASCII characters.
+	 *
+	 * @param c the code point to check
+	 * @return true if the character is a letter
+	 */
+	private static boolean isLetter(int c) {
+		if (c < 0x80) {
+			int lower = c | 0x20;
+			return lower >= 'a' && lower <= 'z';
+		}
+		return Character.isAlphabetic(c);
+	}
+
+	/**
+	 * Checks if a character is whitespace the same way as {@code \p{Space}} in
+	 * {@link #SPLIT_REGEX}, which also includes non-breaking spaces.
+	 *
+	 * @param c the code point to check
+	 * @return true if the character is whitespace
+	 */
+	private static boolean isSpace(int c) {
+		if (c < 0x80) {
+			return c == ' ' || c >= 0x09 && c <= 0x0D;
+		}
+		if (c == 0x85) {
+			return true;
+		}
+
+		int type = Character.getType(c);
+		return type == Character.SPACE_SEPARATOR || type == Character.LINE_SEPARATOR
+				|| type == Character.PARAGRAPH_SEPARATOR;
 	}
 
 	/**
@@ -99,18 +209,16 @@ public class TextParser {
 	}
 
 	/**
-	 * Parses the line into a list of cleaned and stemmed words using the default
-	 * stemmer for English.
+	 * Parses the line into a list of cleaned and stemmed words using the shared
+	 * stem cache for English.
 	 *
 	 * @param line the line of words to parse and stem
 	 * @return a list of cleaned and stemmed words in parsed order
-	 * @see SnowballStemmer#SnowballStemmer(ALGORITHM)
-	 * @see ALGORITHM#ENGLISH
+	 * @see StemCache#SHARED
 	 * @see #listStems(String, Stemmer)
 	 */
 	public static ArrayList<String> listStems(String line) {
-		Stemmer stem = new SnowballStemmer(ENGLISH);
-		return listStems(line, stem);
+		return listStems(line, StemCache.SHARED);
 	}
 
 	/**
@@ -130,38 +238,60 @@ public class TextParser {
 
 	/**
 	 * Parses the line into a set of unique, sorted, cleaned, and stemmed words
-	 * using the default stemmer for English.
+	 * using the shared stem cache for English.
 	 *
 	 * @param line the line of words to parse and stem
 	 * @return a sorted set of unique cleaned and stemmed words
-	 * @see SnowballStemmer#SnowballStemmer(ALGORITHM)
-	 * @see ALGORITHM#ENGLISH
+	 * @see StemCache#SHARED
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static TreeSet<String> uniqueStems(String line) {
-		Stemmer stem = new SnowballStemmer(ENGLISH);
-		return uniqueStems(line, stem);
+		return uniqueStems(line, StemCache.SHARED);
+	}
+
+	/**
+	 * Parses a query line into its unique, sorted stems and the key the query is
+	 * stored under, so a query only has to be stemmed once.
+	 *
+	 * @param line the query line to parse and stem
+	 * @param stemmer the stemmer to use
+	 * @return the stems and key of the query
+	 * @see #uniqueStems(String, Stemmer)
+	 */
+	public static QueryStems analyzeQuery(String line, Stemmer stemmer) {
+		return new QueryStems(uniqueStems(line, stemmer));
+	}
+
+	/**
+	 * Parses a query line into its unique, sorted stems and the key the query is
+	 * stored under, using the shared stem cache for English.
+	 *
+	 * @param line the query line to parse and stem
+	 * @return the stems and key of the query
+	 * @see StemCache#SHARED
+	 * @see #analyzeQuery(String, Stemmer)
+	 */
+	public static QueryStems analyzeQuery(String line) {
+		return analyzeQuery(line, StemCache.SHARED);
 	}
 
 	/**
 	 * Reads a file line by line, parses each line into a set of unique, sorted,
-	 * cleaned, and stemmed words using the default stemmer for English.
+	 * cleaned, and stemmed words using the shared stem cache for English.
 	 *
 	 * @param input the input file to parse and stem
 	 * @return a sorted set of unique cleaned and stemmed words from file
 	 * @throws IOException if unable to read or parse file
-	 * @see SnowballStemmer
-	 * @see ALGORITHM#ENGLISH
+	 * @see StemCache#SHARED
 	 * @see StandardCharsets#UTF_8
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static TreeSet<String> uniqueStems(Path input) throws IOException {
 		TreeSet<String> uniqueStems = new TreeSet<>();
-		Stemmer stem = new SnowballStemmer(ENGLISH);
 		try (BufferedReader reader = Files.newBufferedReader(input, UTF_8)) {
 			String line;
 			while ((line = reader.readLine()) != null) {
-				addStems(line, stem, uniqueStems);
+				addStems(line, StemCache.SHARED, uniqueStems);
 			}
 		}
 		return uniqueStems;
@@ -169,21 +299,20 @@ public class TextParser {
 
 	/**
 	 * Reads a file line by line, parses each line into unique, sorted, cleaned, and
-	 * stemmed words using the default stemmer for English, and adds the set of
+	 * stemmed words using the shared stem cache for English, and adds the set of
 	 * unique sorted stems to a list per line in the file.
 	 *
 	 * @param input the input file to parse and stem
 	 * @return a list where each item is the sets of unique sorted stems parsed from
 	 *   a single line of the input file
 	 * @throws IOException if unable to read or parse file
-	 * @see SnowballStemmer
-	 * @see ALGORITHM#ENGLISH
+	 * @see StemCache#SHARED
 	 * @see StandardCharsets#UTF_8
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static ArrayList<TreeSet<String>> listUniqueStems(Path input) throws IOException {
 		ArrayList<TreeSet<String>> listOfStems = new ArrayList<>();
-		Stemmer stem = new SnowballStemmer(ENGLISH);
+		Stemmer stem = StemCache.SHARED;
 		try (BufferedReader reader = Files.newBufferedReader(input, UTF_8)) {
 			String line;
 			while ((line = reader.readLine()) != null) {
@@ -195,4 +324,57 @@ public class TextParser {
 		return listOfStems;
 	}
 
+	/**
+	 * The unique, sorted stems of a query together with the key it is stored
+	 * under.
+	 */
+	public static class QueryStems {
+		/** The unique stems of the query in sorted order. */
+		private final TreeSet<String> stems;
+
+		/** The stems joined by spaces. */
+		private final String key;
+
+		/**
+		 * Initializes the query from its stems.
+		 *
+		 * @param stems the unique stems of the query in sorted order
+		 */
+		private QueryStems(TreeSet<String> stems) {
+			this.stems = stems;
+			this.key = String.join(" ", stems);
+		}
+
+		/**
+		 * Returns the unique stems of the query.
+		 *
+		 * @return an unmodifiable view of the stems in sorted order
+		 */
+		public Set<String> getStems() {
+			return Collections.unmodifiableSet(stems);
+		}
+
+		/**
+		 * Returns the key the query is stored under.
+		 *
+		 * @return the stems joined by spaces
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Checks if the query has no stems.
+		 *
+		 * @return true if the query has no stems
+		 */
+		public boolean isEmpty() {
+			return stems.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return key;
+		}
+	}
 }
@@ -2,12 +2,21 @@ package edu.usfca.cs272;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 
 /**
  * Thread safe version of InvertedIndex
+ *
+ * Once a bulk of changes is done, {@link #commit()} publishes an immutable
+ * snapshot of the index. Until the next change, searches, views, and
+ * serialization read that snapshot without any locking, so they never hold up
+ * writers. Reads made after an uncommitted change fall back to the lock and see
+ * the latest data, while {@link #snapshot()} keeps returning the last committed
+ * snapshot.
  */
 public class ThreadSafeInvertedIndex extends InvertedIndex {
 
@@ -16,11 +25,43 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	 */
 	private final MultiReaderLock lock;
 
+	/**
+	 * The latest committed snapshot, or null if nothing was committed yet.
+	 */
+	private volatile Snapshot published;
+
+	/**
+	 * Held while freezing a snapshot, so only one freeze runs at a time.
+	 */
+	private final Object commitLock;
+
 	/**
 	 * Initializes the inverted index with empty data structures.
 	 */
 	public ThreadSafeInvertedIndex() {
-		lock = new MultiReaderLock();
+		this(false);
+	}
+
+	/**
+	 * Initializes the inverted index with empty data structures.
+	 *
+	 * @param writerPreference whether waiting writers go before new readers, so
+	 *   live searches cannot starve indexing
+	 * @see MultiReaderLock#MultiReaderLock(boolean)
+	 */
+	public ThreadSafeInvertedIndex(boolean writerPreference) {
+		lock = new MultiReaderLock(writerPreference);
+		commitLock = new Object();
+	}
+
+	/**
+	 * Returns a snapshot of how the lock of this index has been used, to diagnose
+	 * indexing stalls under search load.
+	 *
+	 * @return the lock metrics
+	 */
+	public MultiReaderLock.Metrics lockMetrics() {
+		return lock.metrics();
 	}
 
 	/**
@@ -32,6 +73,98 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		return System.identityHashCode(lock);
 	}
 
+	/**
+	 * A frozen copy of the index along with the lock stamp it was taken at.
+	 */
+	private static class Snapshot {
+		/**
+		 * The optimistic read stamp of the lock when the snapshot was taken, see
+		 * {@link MultiReaderLock#tryOptimisticRead()}.
+		 */
+		private final long stamp;
+
+		/** The frozen copy of the index. */
+		private final FrozenInvertedIndex index;
+
+		/**
+		 * Initializes the snapshot.
+		 *
+		 * @param stamp the lock stamp the snapshot was taken at
+		 * @param index the frozen copy of the index
+		 */
+		private Snapshot(long stamp, FrozenInvertedIndex index) {
+			this.stamp = stamp;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Publishes an immutable snapshot of the current contents for readers to use
+	 * without locking, unless the latest snapshot is already current. Since this
+	 * freezes the whole index, call it once indexing is done or from a
+	 * {@link SnapshotPublisher}, not after every batch of changes.
+	 */
+	@Override
+	public void commit() {
+		publish();
+	}
+
+	/**
+	 * Publishes a snapshot of the current contents unless the latest snapshot is
+	 * already current. Callers that arrive while another snapshot is being frozen
+	 * wait for it, and only freeze again if there were changes in the meantime.
+	 *
+	 * @return the current snapshot
+	 */
+	private FrozenInvertedIndex publish() {
+		FrozenInvertedIndex current = committed();
+		if (current != null) {
+			return current;
+		}
+
+		synchronized (commitLock) {
+			current = committed();
+			if (current != null) {
+				return current;
+			}
+
+			lock.readLock().lock();
+			try {
+				// writers are locked out, so the stamp cannot change while freezing
+				Snapshot snapshot = new Snapshot(lock.tryOptimisticRead(), super.freeze());
+				published = snapshot;
+				return snapshot.index;
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Returns the last committed snapshot, which does not include changes made
+	 * since. Only the first call commits one if nothing was committed yet.
+	 *
+	 * @return the last committed snapshot
+	 */
+	@Override
+	public FrozenInvertedIndex snapshot() {
+		Snapshot snapshot = published;
+		return snapshot != null ? snapshot.index : publish();
+	}
+
+	/**
+	 * Returns the latest snapshot if no writer has locked the index since it was
+	 * committed. This is an optimistic read of the immutable snapshot, so the
+	 * short reads that use it never touch the read lock.
+	 *
+	 * @return the current snapshot, or null if there may be uncommitted changes
+	 */
+	private FrozenInvertedIndex committed() {
+		Snapshot snapshot = published;
+		return snapshot != null && lock.validate(snapshot.stamp) ? snapshot.index : null;
+	}
+
 	@Override
 	public void addData(String word, String location, Integer num) {
 		lock.writeLock().lock();
@@ -43,6 +176,57 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public void addAll(String[] words, String location, int start) {
+		// grouping does not touch the index, so only adding the groups is locked
+		Map<String, PositionList> grouped = group(words, start);
+
+		lock.writeLock().lock();
+		try {
+			addGrouped(grouped, location);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void removeLocations(Collection<String> locations) {
+		lock.writeLock().lock();
+		try {
+			super.removeLocations(locations);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void replaceLocations(Collection<String> locations, InvertedIndex localIndex) {
+		// readers never see the old locations removed before the new ones are added
+		lock.writeLock().lock();
+		try {
+			super.replaceLocations(locations, localIndex);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void replaceLocation(String[] words, String location, int start) {
+		Map<String, PositionList> grouped = group(words, start);
+
+		// readers never see the location half replaced
+		lock.writeLock().lock();
+		try {
+			replaceGrouped(grouped, location);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
 	@Override
 	public void addDistinctIndex(InvertedIndex localIndex) {
 		lock.writeLock().lock();
@@ -56,6 +240,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public boolean hasCount(String location) {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.hasCount(location);
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.hasCount(location);
@@ -63,11 +252,15 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		finally {
 			lock.readLock().unlock();
 		}
-
 	}
 
 	@Override
 	public boolean hasWord(String word) {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.hasWord(word);
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.hasWord(word);
@@ -79,6 +272,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public boolean hasLocation(String word, String location) {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.hasLocation(word, location);
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.hasLocation(word, location);
@@ -90,6 +288,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public boolean hasPosition(String word, String location, int position) {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.hasPosition(word, location, position);
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.hasPosition(word, location, position);
@@ -101,6 +304,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public SortedMap<String, Integer> getWordCounts() {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.getWordCounts();
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.getWordCounts();
@@ -112,6 +320,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public Set<String> getWords() {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.getWords();
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.getWords();
@@ -132,8 +345,24 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public int numTotalWords() {
+		lock.readLock().lock();
+		try {
+			return super.numTotalWords();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public int numWordFrequency(String word) {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.numWordFrequency(word);
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.numWordFrequency(word);
@@ -145,6 +374,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public int numTotalWordsForLocation(String location) {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.numTotalWordsForLocation(location);
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.numTotalWordsForLocation(location);
@@ -156,6 +390,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public int numWordFrequencyAtLocation(String word, String location) {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.numWordFrequencyAtLocation(word, location);
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.numWordFrequencyAtLocation(word, location);
@@ -167,6 +406,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public Set<String> getLocations(String word) {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.getLocations(word);
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.getLocations(word);
@@ -178,6 +422,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public Set<Integer> getPositions(String word, String location) {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.getPositions(word, location);
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.getPositions(word, location);
@@ -187,13 +436,13 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
-	@Override
-	public List<SearchResult> search(Set<String> queryWords, boolean isExact) throws IOException {
-		return super.search(queryWords, isExact);
-	}
-
 	@Override
 	public List<SearchResult> exactSearch(Set<String> queryWords) {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.exactSearch(queryWords);
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.exactSearch(queryWords);
@@ -205,6 +454,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public List<SearchResult> partialSearch(Set<String> queries) {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.partialSearch(queries);
+		}
+
 		lock.readLock().lock();
 		try {
 			return super.partialSearch(queries);
@@ -215,16 +469,43 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	}
 
 	@Override
-	public void writeJson(Path path) throws IOException {
+	public List<SearchResult> search(Set<String> queryWords, boolean isExact, int k) {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot.search(queryWords, isExact, k);
+		}
+
+		lock.readLock().lock();
+		try {
+			return super.search(queryWords, isExact, k);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public FrozenInvertedIndex freeze() {
+		FrozenInvertedIndex snapshot = committed();
+		if (snapshot != null) {
+			return snapshot;
+		}
+
 		lock.readLock().lock();
 		try {
-			super.writeJson(path);
+			return super.freeze();
 		}
 		finally {
 			lock.readLock().unlock();
 		}
 	}
 
+	@Override
+	public void writeJson(Path path) throws IOException {
+		// only freezing needs the lock, writing the file does not
+		publish().writeJson(path);
+	}
+
 	@Override
 	public String toString() {
 		lock.readLock().lock();
@@ -0,0 +1,68 @@
+package edu.usfca.cs272;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes non-negative integers using variable-byte encoding, where each byte
+ * stores seven bits of the value and the high bit marks that more bytes follow.
+ * Small values such as the gaps between sorted document IDs or positions take a
+ * single byte.
+ */
+public class VariableByteCodec {
+
+	/**
+	 * Writes a non-negative value to the output stream.
+	 *
+	 * @param value the value to write
+	 * @param out the output stream to write to
+	 * @throws IllegalArgumentException if the value is negative
+	 */
+	public static void write(int value, ByteArrayOutputStream out) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Cannot encode negative value: " + value);
+		}
+
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Reads a value from the buffer starting at its current position, advancing
+	 * the position past the encoded bytes.
+	 *
+	 * @param buffer the buffer to read from
+	 * @return the decoded value
+	 */
+	public static int read(ByteBuffer buffer) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+			b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while (b < 0);
+
+		return value;
+	}
+
+	/**
+	 * Skips past the given number of encoded values in the buffer.
+	 *
+	 * @param buffer the buffer to advance
+	 * @param count the number of values to skip
+	 */
+	public static void skip(ByteBuffer buffer, int count) {
+		while (count > 0) {
+			if (buffer.get() >= 0) {
+				count--;
+			}
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the single pass {@link TextParser#parse(String)} returns exactly
+ * the same words as cleaning and splitting the text with the regular
+ * expressions, {@code split(clean(text))}.
+ */
+public class TextParserTest {
+
+	/**
+	 * Lines of text in several scripts, with accents, punctuation, digits, and
+	 * unusual whitespace.
+	 */
+	private static final List<String> CORPUS = List.of(
+			"The quick brown fox jumps over the lazy dog.",
+			"  Leading and trailing spaces\t\t",
+			"Hello, World! It's 2023 -- isn't it?",
+			"don't stop-believing; e-mail me at someone@example.com",
+			"Café, naïve, résumé, coöperate, façade, jalapeño",
+			"Ｆｕｌｌｗｉｄｔｈ ｌｅｔｔｅｒｓ and ﬁ ligatures",
+			"Straße, Größe, Übermäßig, ÄÖÜ",
+			"İstanbul, ıslak, DİYARBAKIR, Iğdır",
+			"Lietuvių kalba: Į̃, ĖĮ, Ĩ",
+			"Русский текст, ЁЖИК и ёлка!",
+			"ΟΔΥΣΣΕΥΣ, Σίσυφος, ΣΟΦΟΣ Σ ΑΣ.ΣΑ σς",
+			"中文文本，没有空格。日本語のテキスト",
+			"العربية نص مع أرقام ١٢٣",
+			"עברית עם ניקוד: שָׁלוֹם",
+			"हिन्दी पाठ, देवनागरी",
+			"emoji \uD83D\uDE00 between \uD83C\uDF89 words and \uD835\uDD18\uD835\uDD2B\uD835\uDD26",
+			"\u00A0starts with a non-breaking space",
+			"\u2007figure\u2028line\u2029paragraph\u0085next",
+			"\u3000ideographic space first",
+			"zero\u200Bwidth\uFEFFjoiners\u200Dand\u00ADsoft hyphen",
+			"combining a\u0301 e\u0308 n\u0303 marks on their own \u0301\u0308",
+			"tabs\tnew\nlines\rcarriage\u000Bvertical\u000Cform",
+			"",
+			"   ",
+			"\u00A0",
+			"!!!",
+			"Ⅻ Ⅷ roman numerals and ª º ordinals");
+
+	/**
+	 * Characters that are likely to expose differences, such as letters whose
+	 * lowercase or decomposed form is unusual, and the many kinds of whitespace.
+	 */
+	private static final int[] TRICKY = {
+			'a', 'Z', ' ', '\t', '\n', '.', '-', '\'', '1', 0x00A0, 0x0085, 0x1680, 0x2000, 0x2007, 0x200B, 0x2028,
+			0x2029, 0x202F, 0x205F, 0x3000, 0xFEFF, 0x00AD, 0x00C5, 0x00DF, 0x0130, 0x0131, 0x0149, 0x01C5, 0x0301,
+			0x0345, 0x03A3, 0x03C2, 0x03C3, 0x0390, 0x1E9E, 0x2160, 0x2126, 0x212A, 0xFB01, 0xFF21, 0x1D518,
+			0x1F600, 0x10400 };
+
+	/**
+	 * The default locale before each test, restored afterwards.
+	 */
+	private Locale original;
+
+	/**
+	 * Remembers the default locale.
+	 */
+	@BeforeEach
+	public void saveLocale() {
+		original = Locale.getDefault();
+	}
+
+	/**
+	 * Restores the default locale.
+	 */
+	@AfterEach
+	public void restoreLocale() {
+		Locale.setDefault(original);
+	}
+
+	/**
+	 * Asserts that both ways of parsing return the same words.
+	 *
+	 * @param text the text to parse
+	 */
+	private static void assertSameWords(String text) {
+		assertArrayEquals(TextParser.split(TextParser.clean(text)), TextParser.parse(text),
+				() -> "Different words for: " + text.codePoints().mapToObj(Integer::toHexString).toList());
+	}
+
+	/**
+	 * Tests every line of the corpus under locales that lowercase differently.
+	 */
+	@Test
+	public void testCorpus() {
+		for (String tag : List.of("en-US", "tr-TR", "lt-LT", "el-GR")) {
+			Locale.setDefault(Locale.forLanguageTag(tag));
+			for (String line : CORPUS) {
+				assertSameWords(line);
+			}
+			assertSameWords(String.join("\n", CORPUS));
+		}
+	}
+
+	/**
+	 * Tests that a capital sigma is lowercased the same way as
+	 * {@link String#toLowerCase()} does for the whole text. This depends on the
+	 * letters around it, and differs from lowercasing each word on its own when
+	 * the letter before it is outside the Basic Multilingual Plane.
+	 */
+	@Test
+	public void testFinalSigma() {
+		for (String text : List.of("Σ", "ΑΣ", "ΣΑ", "ΑΣΑ", "ΑΣ ΑΣ", "ΑΣ.", "ΑΣ.Α", "Α.Σ", "ΑΣ\u00A0Α", "ΑΣ\u0301",
+				"ΆΣ", "ΟΔΥΣΣΕΥΣ!", "ΣΣΣ", "aΣ1b", "1Σ",
+				"\uD835\uDD18\u03A3", " \uD835\uDD18\u03A3", "\u2028\uD835\uDD18\u03A3", "a \uD801\uDC00\u03A3")) {
+			assertSameWords(text);
+		}
+	}
+
+	/**
+	 * Tests that text starting with whitespace {@link String#strip()} keeps, such
+	 * as a non-breaking space, starts with the same empty word.
+	 */
+	@Test
+	public void testLeadingNonBreakingSpace() {
+		for (String text : List.of("\u00A0word", "\u00A0\u00A0word", " \u00A0word", "\u00A0", "\u202F two words",
+				"\u2007word", "\u3000word", ".\u00A0word", "\u00A0.word", "\u00A0 ", " word\u00A0")) {
+			assertSameWords(text);
+		}
+	}
+
+	/**
+	 * Tests every code point on its own, and between two letters.
+	 */
+	@Test
+	public void testEveryCodePoint() {
+		for (int c = 0; c <= Character.MAX_CODE_POINT; c++) {
+			if (Character.isSurrogate((char) c) && c <= Character.MAX_VALUE) {
+				continue;
+			}
+
+			String single = Character.toString(c);
+			assertSameWords(single);
+			assertSameWords("a" + single + "b");
+		}
+	}
+
+	/**
+	 * Tests random strings of tricky characters and random code points.
+	 */
+	@Test
+	public void testRandomText() {
+		Random random = new Random(272);
+		StringBuilder text = new StringBuilder();
+
+		for (int i = 0; i < 200_000; i++) {
+			text.setLength(0);
+			int length = random.nextInt(12);
+
+			for (int j = 0; j < length; j++) {
+				if (random.nextInt(4) == 0) {
+					int c = random.nextInt(Character.MAX_CODE_POINT + 1);
+					if (!Character.isSurrogate((char) c) || c > Character.MAX_VALUE) {
+						text.appendCodePoint(c);
+					}
+				}
+				else {
+					text.appendCodePoint(TRICKY[random.nextInt(TRICKY.length)]);
+				}
+			}
+
+			assertSameWords(text.toString());
+		}
+	}
+}